@@ -0,0 +1,193 @@
+package buffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pool de ByteBuffers com classes de tamanho (1 KB a 256 KB, potências de 2,
+ * mesma faixa do AlgorithmSelector).
+ *
+ * Cada thread de plataforma tem um cache local pequeno por classe; o restante
+ * fica em listas globais. Virtual threads usam só as listas globais, já que um
+ * cache por virtual thread multiplicaria a memória retida. Threads de conexão
+ * vivem pouco: ao terminar devolvem o cache com flushThreadCaches() (feito em
+ * ThreadMode.start), senão os buffers somem com a thread e continuam contados
+ * em 'allocatedBytes' até o pool direto só entregar heap. O total alocado pelo
+ * pool é limitado por 'maxBytes': no pool direto, acima do limite o buffer vem
+ * do heap (fora da contabilidade); no pool de heap, buffers devolvidos acima do
+ * limite são descartados.
+ *
+ * Uso esperado: emprestar a cada ciclo de leitura e devolver assim que o
+ * conteúdo for escrito, para que conexões ociosas não retenham memória.
+ */
+public class BufferPool {
+
+    public static final int MIN_SIZE = 1024;
+    public static final int MAX_SIZE = 256 * 1024;
+    private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE / MIN_SIZE) + 1;
+
+    private static final int THREAD_CACHE_PER_CLASS = 4;
+    private static final long THREAD_CACHE_MAX_BYTES = 512 * 1024;
+
+    /** Buffers off-heap para os caminhos com SocketChannel (ChannelPipe, NIO) */
+    public static final BufferPool DIRECT = new BufferPool("direct", true, 64L * 1024 * 1024);
+
+    /** Buffers com array para os caminhos com InputStream/OutputStream */
+    public static final BufferPool HEAP = new BufferPool("heap", false, 64L * 1024 * 1024);
+
+    private final String name;
+    private final boolean direct;
+    private final long maxBytes;
+
+    @SuppressWarnings("unchecked")
+    private final Queue<ByteBuffer>[] global = (Queue<ByteBuffer>[]) new Queue<?>[CLASSES];
+    private final ThreadLocal<ThreadCache> local = ThreadLocal.withInitial(ThreadCache::new);
+
+    private final AtomicLong allocatedBytes = new AtomicLong(); // footprint: emprestado + livre
+    private final AtomicLong inUseBytes = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder overCap = new LongAdder();
+
+    public BufferPool(String name, boolean direct, long maxBytes) {
+        this.name = name;
+        this.direct = direct;
+        this.maxBytes = maxBytes;
+        for (int i = 0; i < CLASSES; i++) global[i] = new ConcurrentLinkedQueue<>();
+    }
+
+    /** Classe que comporta 'size' bytes (limitado a 1 KB .. 256 KB) */
+    static int sizeClass(int size) {
+        if (size <= MIN_SIZE) return 0;
+        if (size >= MAX_SIZE) return CLASSES - 1;
+        return 32 - Integer.numberOfLeadingZeros((size - 1) / MIN_SIZE);
+    }
+
+    static int classSize(int sizeClass) {
+        return MIN_SIZE << sizeClass;
+    }
+
+    /**
+     * Empresta um buffer limpo com capacidade >= size (até 256 KB). O limit
+     * é ajustado para 'size' para que a leitura respeite o tamanho pedido.
+     */
+    public ByteBuffer acquire(int size) {
+        int cls = sizeClass(size);
+        int capacity = classSize(cls);
+
+        ByteBuffer buf = null;
+        ThreadCache cache = Thread.currentThread().isVirtual() ? null : local.get();
+        if (cache != null) buf = cache.poll(cls);
+        if (buf == null) buf = global[cls].poll();
+
+        if (buf != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+            if (allocatedBytes.addAndGet(capacity) > maxBytes) {
+                overCap.increment();
+                if (direct) {
+                    // acima do limite off-heap: buffer comum no heap, ignorado no release
+                    allocatedBytes.addAndGet(-capacity);
+                    return ByteBuffer.allocate(capacity).limit(Math.min(size, capacity));
+                }
+            }
+            buf = direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity);
+        }
+
+        inUseBytes.addAndGet(capacity);
+        buf.clear();
+        buf.limit(Math.min(size, capacity));
+        return buf;
+    }
+
+    /** Devolve um buffer emprestado por este pool (buffers estranhos são ignorados) */
+    public void release(ByteBuffer buf) {
+        if (buf == null || buf.isDirect() != direct) return;
+        int capacity = buf.capacity();
+        int cls = sizeClass(capacity);
+        if (classSize(cls) != capacity) return;
+        if (buf.isReadOnly()) return;
+
+        inUseBytes.addAndGet(-capacity);
+
+        if (allocatedBytes.get() > maxBytes) {
+            allocatedBytes.addAndGet(-capacity); // descarta para voltar abaixo do limite
+            return;
+        }
+
+        ThreadCache cache = Thread.currentThread().isVirtual() ? null : local.get();
+        if (cache != null && cache.offer(cls, buf)) return;
+        global[cls].offer(buf);
+    }
+
+    /** Devolve às listas globais o cache da thread atual (chamar antes de a thread terminar) */
+    public void flushThreadCache() {
+        if (Thread.currentThread().isVirtual()) return;
+        ThreadCache cache = local.get();
+        local.remove();
+        for (int cls = 0; cls < CLASSES; cls++) {
+            ByteBuffer buf;
+            while ((buf = cache.poll(cls)) != null) {
+                if (allocatedBytes.get() > maxBytes) {
+                    allocatedBytes.addAndGet(-buf.capacity());
+                } else {
+                    global[cls].offer(buf);
+                }
+            }
+        }
+    }
+
+    /** flushThreadCache() dos dois pools compartilhados */
+    public static void flushThreadCaches() {
+        HEAP.flushThreadCache();
+        DIRECT.flushThreadCache();
+    }
+
+    public String getName() { return name; }
+    public long getHits() { return hits.sum(); }
+    public long getMisses() { return misses.sum(); }
+    public long getOverCap() { return overCap.sum(); }
+    public long getAllocatedBytes() { return allocatedBytes.get(); }
+    public long getInUseBytes() { return inUseBytes.get(); }
+    public long getMaxBytes() { return maxBytes; }
+
+    public double getHitRatio() {
+        long h = getHits(), m = getMisses();
+        return (h + m) == 0 ? 0 : (double) h / (h + m);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s hit=%.1f%% miss=%d mem=%dKB inUse=%dKB",
+                name, getHitRatio() * 100, getMisses(), getAllocatedBytes() / 1024, getInUseBytes() / 1024);
+    }
+
+    /** Cache por thread de plataforma; limitado por classe e em bytes */
+    private static final class ThreadCache {
+        @SuppressWarnings("unchecked")
+        private final ArrayDeque<ByteBuffer>[] stacks = (ArrayDeque<ByteBuffer>[]) new ArrayDeque<?>[CLASSES];
+        private long bytes = 0;
+
+        ByteBuffer poll(int cls) {
+            ArrayDeque<ByteBuffer> stack = stacks[cls];
+            if (stack == null) return null;
+            ByteBuffer buf = stack.pollFirst();
+            if (buf != null) bytes -= buf.capacity();
+            return buf;
+        }
+
+        boolean offer(int cls, ByteBuffer buf) {
+            if (bytes + buf.capacity() > THREAD_CACHE_MAX_BYTES) return false;
+            if (stacks[cls] == null) stacks[cls] = new ArrayDeque<>(THREAD_CACHE_PER_CLASS);
+            if (stacks[cls].size() >= THREAD_CACHE_PER_CLASS) return false;
+            stacks[cls].addFirst(buf);
+            bytes += buf.capacity();
+            return true;
+        }
+    }
+}
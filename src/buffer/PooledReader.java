@@ -0,0 +1,137 @@
+package buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Leitor bloqueante que só segura um buffer do pool enquanto há dados.
+ *
+ * Com a entrada ociosa a thread bloqueia lendo um único byte, sem buffer
+ * emprestado; quando ele chega, um buffer da classe pedida é emprestado e
+ * preenchido com o que já estiver disponível no socket. Depois de processar
+ * o chunk, recycle() devolve o buffer se não houver mais nada para ler. Quem
+ * também precisa saber se a entrada está ociosa (coalescência) consulta
+ * idle() uma vez e passa o resultado para recycle(boolean): um available()
+ * (FIONREAD) por chunk.
+ */
+public class PooledReader implements AutoCloseable {
+
+    private final InputStream in;
+    private final SocketChannel channel; // null no modo stream
+    private final BufferPool pool;
+
+    private final ByteBuffer probe;
+    private ByteBuffer held;
+
+    /** Modo stream: buffers de heap, lidos via InputStream */
+    public PooledReader(InputStream in, BufferPool pool) {
+        this.in = in;
+        this.channel = null;
+        this.pool = pool;
+        this.probe = null;
+    }
+
+    /** Modo channel (bloqueante): lê direto no ByteBuffer emprestado */
+    public PooledReader(SocketChannel channel, BufferPool pool) throws IOException {
+        this.in = channel.socket().getInputStream(); // usado só para available()
+        this.channel = channel;
+        this.pool = pool;
+        this.probe = ByteBuffer.allocateDirect(1);
+    }
+
+    /**
+     * Bloqueia até haver dados e retorna o buffer emprestado com o chunk em
+     * [position, limit), ou null em fim de fluxo. Se o tamanho pedido mudar
+     * de classe o buffer atual é trocado.
+     */
+    public ByteBuffer next(int size) throws IOException {
+        if (held != null && BufferPool.sizeClass(size) != BufferPool.sizeClass(held.capacity())) {
+            releaseHeld();
+        }
+
+        if (held == null) {
+            // entrada ociosa: espera sem segurar memória do pool
+            int first = readOne();
+            if (first < 0) return null;
+
+            held = pool.acquire(size);
+            held.put((byte) first);
+            readAvailable();
+        } else {
+            held.clear();
+            held.limit(Math.min(size, held.capacity()));
+            if (readBlocking() < 0) return null;
+        }
+
+        held.flip();
+        return held;
+    }
+
+    /** Devolve o buffer ao pool se não houver mais bytes prontos para leitura */
+    public void recycle() throws IOException {
+        if (held != null) recycle(idle());
+    }
+
+    /** Como recycle(), com o resultado de um idle() já consultado para este chunk */
+    public void recycle(boolean inputIdle) {
+        if (inputIdle) releaseHeld();
+    }
+
+    /** true se não há bytes prontos: a próxima leitura bloquearia */
+    public boolean idle() throws IOException {
+        return in.available() == 0;
+    }
+
+    @Override
+    public void close() {
+        releaseHeld();
+    }
+
+    private void releaseHeld() {
+        if (held != null) {
+            pool.release(held);
+            held = null;
+        }
+    }
+
+    private int readOne() throws IOException {
+        if (channel == null) return in.read();
+
+        probe.clear();
+        int n;
+        do {
+            n = channel.read(probe);
+        } while (n == 0);
+        return n < 0 ? -1 : probe.get(0) & 0xFF;
+    }
+
+    private void readAvailable() throws IOException {
+        int avail = Math.min(in.available(), held.remaining());
+        if (avail <= 0) return;
+
+        if (channel == null) {
+            int n = in.read(held.array(), held.arrayOffset() + held.position(), avail);
+            if (n > 0) held.position(held.position() + n);
+        } else {
+            int limit = held.limit();
+            held.limit(held.position() + avail);
+            channel.read(held);
+            held.limit(limit);
+        }
+    }
+
+    private int readBlocking() throws IOException {
+        if (channel == null) {
+            int n = in.read(held.array(), held.arrayOffset(), held.remaining());
+            if (n > 0) held.position(n);
+            return n;
+        }
+        int n;
+        do {
+            n = channel.read(held);
+        } while (n == 0);
+        return n;
+    }
+}
@@ -0,0 +1,207 @@
+package buffer;
+
+import network.Env;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Estágio de escrita que agrupa chunks pequenos antes de enviá-los.
+ *
+ * Os bytes ficam num buffer emprestado do pool e são enviados quando:
+ *  - o buffer atinge o limite de bytes (threshold);
+ *  - o byte mais antigo espera mais que o orçamento de latência (budget);
+ *  - a entrada fica ociosa (nada mais pronto para leitura): tráfego
+ *    interativo nunca fica parado esperando mais dados. Sem nada pendente,
+ *    o chunk de uma entrada ociosa vai direto para o socket, sem cópia.
+ *
+ * Guarda quantos bytes cada flush carrega e quanto tempo os bytes esperam,
+ * para ajustar o equilíbrio entre throughput e latência. Não é thread-safe:
+ * cada direção do relay tem o seu.
+ *
+ * Configuração padrão pelo ambiente: COALESCE_BYTES (64KB) e
+ * COALESCE_BUDGET_US (200µs; 0 = flush a cada leitura).
+ */
+public class WriteCoalescer implements AutoCloseable {
+
+    public static final int DEFAULT_THRESHOLD = Env.intValue("COALESCE_BYTES", 64 * 1024);
+    public static final long DEFAULT_BUDGET_US = Env.intValue("COALESCE_BUDGET_US", 200);
+
+    /** Recebe cada flush: bytes enviados, quanto o mais antigo esperou e o tempo bloqueado na escrita */
+    public interface FlushObserver {
+        void onFlush(int bytes, long waitNanos, long writeNanos);
+    }
+
+    private final OutputStream out;
+    private final BufferPool pool;
+    private final int threshold;
+    private long budgetNanos;
+
+    private ByteBuffer pending;
+    private FlushObserver observer;
+    private long firstPendingAt;
+
+    private long flushes = 0;
+    private long flushedBytes = 0;
+    private long waitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long thresholdFlushes = 0;
+    private long budgetFlushes = 0;
+    private long idleFlushes = 0;
+
+    public WriteCoalescer(OutputStream out) {
+        this(out, BufferPool.HEAP, DEFAULT_THRESHOLD, DEFAULT_BUDGET_US);
+    }
+
+    public WriteCoalescer(OutputStream out, BufferPool pool, int threshold, long budgetMicros) {
+        this.out = out;
+        this.pool = pool;
+        this.threshold = Math.max(1, Math.min(threshold, BufferPool.MAX_SIZE));
+        this.budgetNanos = Math.max(0, budgetMicros) * 1000;
+    }
+
+    /** Troca o orçamento de latência (vale para o próximo afterRead); < 0 ignora */
+    public void setBudgetMicros(long budgetMicros) {
+        if (budgetMicros >= 0) budgetNanos = budgetMicros * 1000;
+    }
+
+    public void setFlushObserver(FlushObserver observer) {
+        this.observer = observer;
+    }
+
+    /** Acumula os bytes; envia direto se o bloco sozinho já passa do limite */
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len <= 0) return;
+
+        if (len >= threshold) {
+            if (hasPending()) flush(Reason.THRESHOLD);
+            writeDirect(b, off, len);
+            thresholdFlushes++;
+            return;
+        }
+
+        if (pending != null && pending.remaining() < len) flush(Reason.THRESHOLD);
+
+        if (pending == null) {
+            pending = pool.acquire(threshold);
+        }
+        if (pending.position() == 0) firstPendingAt = System.nanoTime();
+
+        pending.put(b, off, len);
+        if (pending.position() >= threshold) flush(Reason.THRESHOLD);
+    }
+
+    /**
+     * write() seguido de afterRead(inputIdle), já sabendo se a entrada está
+     * ociosa: sem nada pendente, um chunk que seria enviado na hora vai direto
+     * do buffer de leitura, sem passar pelo buffer do pool.
+     */
+    public void write(byte[] b, int off, int len, boolean inputIdle) throws IOException {
+        if (inputIdle && len > 0 && !hasPending()) {
+            writeDirect(b, off, len);
+            idleFlushes++;
+            return;
+        }
+        write(b, off, len);
+        afterRead(inputIdle);
+    }
+
+    private void writeDirect(byte[] b, int off, int len) throws IOException {
+        long start = System.nanoTime();
+        out.write(b, off, len);
+        out.flush();
+        record(len, 0, System.nanoTime() - start);
+    }
+
+    /**
+     * Chamado depois de cada chunk processado. 'inputIdle' indica que não há
+     * mais bytes prontos na entrada: nesse caso envia na hora; senão só se o
+     * orçamento de latência estourou.
+     */
+    public void afterRead(boolean inputIdle) throws IOException {
+        if (!hasPending()) return;
+
+        if (inputIdle) flush(Reason.IDLE);
+        else if (System.nanoTime() - firstPendingAt >= budgetNanos) flush(Reason.BUDGET);
+    }
+
+    /** Envia o que estiver pendente */
+    public void flush() throws IOException {
+        if (hasPending()) flush(Reason.IDLE);
+    }
+
+    private boolean hasPending() {
+        return pending != null && pending.position() > 0;
+    }
+
+    private enum Reason { THRESHOLD, BUDGET, IDLE }
+
+    private void flush(Reason reason) throws IOException {
+        int len = pending.position();
+        long start = System.nanoTime();
+        try {
+            out.write(pending.array(), pending.arrayOffset(), len);
+            out.flush();
+        } finally {
+            // buffer volta ao pool a cada flush: conexão ociosa não retém memória
+            pool.release(pending);
+            pending = null;
+        }
+
+        long end = System.nanoTime();
+        record(len, end - firstPendingAt, end - start);
+        switch (reason) {
+            case THRESHOLD: thresholdFlushes++; break;
+            case BUDGET:    budgetFlushes++;    break;
+            case IDLE:      idleFlushes++;      break;
+        }
+    }
+
+    private void record(int len, long wait, long writeNanos) {
+        if (observer != null) observer.onFlush(len, wait, writeNanos);
+        flushes++;
+        flushedBytes += len;
+        waitNanos += wait;
+        if (wait > maxWaitNanos) maxWaitNanos = wait;
+    }
+
+    /** Envia o pendente e devolve o buffer ao pool; não fecha o stream */
+    @Override
+    public void close() {
+        try {
+            flush();
+        } catch (IOException ignored) {
+        } finally {
+            if (pending != null) {
+                pool.release(pending);
+                pending = null;
+            }
+        }
+    }
+
+    public long getFlushes() { return flushes; }
+    public long getFlushedBytes() { return flushedBytes; }
+    public long getThresholdFlushes() { return thresholdFlushes; }
+    public long getBudgetFlushes() { return budgetFlushes; }
+    public long getIdleFlushes() { return idleFlushes; }
+
+    public double getAvgBytesPerFlush() {
+        return flushes == 0 ? 0.0 : (double) flushedBytes / flushes;
+    }
+
+    public double getAvgWaitMicros() {
+        return flushes == 0 ? 0.0 : waitNanos / 1000.0 / flushes;
+    }
+
+    public long getMaxWaitMicros() {
+        return maxWaitNanos / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("flushes=%d (limite=%d orçamento=%d ocioso=%d) bytes/flush=%.0f espera média=%.1fµs max=%dµs",
+                flushes, thresholdFlushes, budgetFlushes, idleFlushes,
+                getAvgBytesPerFlush(), getAvgWaitMicros(), getMaxWaitMicros());
+    }
+}
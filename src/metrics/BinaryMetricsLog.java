@@ -0,0 +1,244 @@
+package metrics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Log binário de métricas, compartilhado pelo processo (um arquivo para
+ * todas as conexões, em vez de um CSV por conexão).
+ *
+ * Formato (append-only):
+ *   cabeçalho: "TCPM", versão (1 byte), nº de colunas (varint), nomes das
+ *              colunas (varint tamanho + UTF-8), epoch de abertura (8 bytes)
+ *   'S' id texto        - define uma string (status/algoritmo) no dicionário
+ *   'R' conn mapa v...  - linha: id da conexão, mapa de bits (varint) das
+ *                         colunas que mudaram e, só para essas, na ordem do
+ *                         cabeçalho, a diferença para a linha anterior da
+ *                         mesma conexão (zigzag + varint). Em epoch_ms a
+ *                         diferença é entre intervalos (delta do delta): a
+ *                         cadência fixa da amostragem não ocupa nada.
+ *   'C' conn            - conexão encerrada; o estado de delta dela é descartado
+ *
+ * Toda linha tem as mesmas colunas (as do CSV); strings viram ids do
+ * dicionário. A maioria das colunas (buffer, cwnd, opções de socket,
+ * status...) muda raramente e só custa o bit do mapa. As escritas passam
+ * por um buffer de 64KB e vão para o FileChannel quando ele enche ou a cada
+ * FLUSH_MS.
+ */
+public final class BinaryMetricsLog implements AutoCloseable {
+
+    static final byte[] MAGIC = { 'T', 'C', 'P', 'M' };
+    static final byte VERSION = 2;
+
+    static final byte STRING = 'S';
+    static final byte ROW = 'R';
+    static final byte CLOSE = 'C';
+
+    /** Mesmas colunas, na mesma ordem, do CSV lido pelo gerar_graficos.py */
+    public static final String[] COLUMNS = {
+            "epoch_ms", "c2s_bytes", "s2c_bytes", "rtt_us", "rttvar_us", "throughput_Bps", "status",
+            "algorithm", "buffer_size", "cwnd", "ssthresh", "sndbuf", "rcvbuf", "nodelay", "retrans", "unacked"
+    };
+    /** Coluna gravada como delta do delta */
+    static final int EPOCH = 0;
+    /** Colunas cujo valor é id do dicionário de strings */
+    static final int STATUS = 6;
+    static final int ALGORITHM = 7;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_RECORD = 1 + 10 * (COLUMNS.length + 2);
+    private static final long FLUSH_MS = 1000;
+
+    private static volatile BinaryMetricsLog shared;
+    private static final Lock sharedLock = new ReentrantLock();
+
+    private final String path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final Lock lock = new ReentrantLock();
+
+    private final Map<String, Integer> strings = new HashMap<>();
+    // por conexão: valores da linha anterior e, na última posição, o intervalo anterior de epoch_ms
+    private final Map<Long, long[]> previous = new HashMap<>();
+    private final long[] deltas = new long[COLUMNS.length];
+    private long lastFlush = System.currentTimeMillis();
+    private long bytesWritten = 0;
+    private long rows = 0;
+
+    public BinaryMetricsLog(String path) throws IOException {
+        this.path = path;
+        File parent = new File(path).getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists()) parent.mkdirs();
+
+        this.channel = FileChannel.open(Paths.get(path),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writeHeader();
+    }
+
+    /** Log do processo em logs/metrics_<epoch>.bin, aberto no primeiro uso */
+    public static BinaryMetricsLog shared() throws IOException {
+        BinaryMetricsLog log = shared;
+        if (log != null) return log;
+
+        sharedLock.lock();
+        try {
+            if (shared == null) {
+                BinaryMetricsLog created = new BinaryMetricsLog("logs/metrics_" + System.currentTimeMillis() + ".bin");
+                Runtime.getRuntime().addShutdownHook(new Thread(created::close, "Metrics-Log-Close"));
+                System.out.println("[METRICS] Log binário em " + created.getPath());
+                shared = created;
+            }
+            return shared;
+        } finally {
+            sharedLock.unlock();
+        }
+    }
+
+    public String getPath() { return path; }
+
+    private void writeHeader() throws IOException {
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+        putVarint(COLUMNS.length);
+        for (String c : COLUMNS) putString(c);
+        buffer.putLong(System.currentTimeMillis());
+        drain();
+    }
+
+    /**
+     * Acrescenta uma linha. 'values' segue COLUMNS; nas colunas STATUS e
+     * ALGORITHM o valor é ignorado e 'status'/'algorithm' são usados.
+     */
+    public void append(long connId, long[] values, String status, String algorithm) throws IOException {
+        lock.lock();
+        try {
+            values[STATUS] = stringId(status);
+            values[ALGORITHM] = stringId(algorithm);
+
+            ensure(MAX_RECORD);
+            long[] prev = previous.computeIfAbsent(connId, k -> new long[COLUMNS.length + 1]);
+            long changed = 0;
+            for (int i = 0; i < COLUMNS.length; i++) {
+                long delta = values[i] - prev[i];
+                if (i == EPOCH) {
+                    long step = delta;
+                    delta = step - prev[COLUMNS.length];
+                    prev[COLUMNS.length] = step;
+                }
+                prev[i] = values[i];
+                deltas[i] = delta;
+                if (delta != 0) changed |= 1L << i;
+            }
+
+            buffer.put(ROW);
+            putVarint(connId);
+            putVarint(changed);
+            for (int i = 0; i < COLUMNS.length; i++) {
+                if ((changed & (1L << i)) != 0) putVarint(zigzag(deltas[i]));
+            }
+            rows++;
+
+            long now = System.currentTimeMillis();
+            if (now - lastFlush >= FLUSH_MS) drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Marca o fim da conexão; a próxima linha com o mesmo id recomeça os deltas */
+    public void closeConnection(long connId) {
+        lock.lock();
+        try {
+            if (previous.remove(connId) == null) return;
+            ensure(11);
+            buffer.put(CLOSE);
+            putVarint(connId);
+        } catch (IOException e) {
+            System.err.println("[METRICS] erro no log binário: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void flush() throws IOException {
+        lock.lock();
+        try {
+            drain();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRows() { return rows; }
+    public long getBytesWritten() { return bytesWritten + buffer.position(); }
+
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            drain();
+            channel.close();
+        } catch (IOException ignored) {
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int stringId(String s) throws IOException {
+        if (s == null) s = "";
+        Integer id = strings.get(s);
+        if (id != null) return id;
+
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        ensure(1 + 10 + 5 + bytes.length);
+        id = strings.size();
+        strings.put(s, id);
+        buffer.put(STRING);
+        putVarint(id);
+        putVarint(bytes.length);
+        buffer.put(bytes);
+        return id;
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) drain();
+    }
+
+    private void drain() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) bytesWritten += channel.write(buffer);
+        buffer.clear();
+        lastFlush = System.currentTimeMillis();
+    }
+
+    private void putString(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        putVarint(bytes.length);
+        buffer.put(bytes);
+    }
+
+    private void putVarint(long v) {
+        while ((v & ~0x7FL) != 0) {
+            buffer.put((byte) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        buffer.put((byte) v);
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+}
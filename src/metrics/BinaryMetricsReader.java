@@ -0,0 +1,232 @@
+package metrics;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Lê o log do BinaryMetricsLog em fluxo e exporta para o CSV esperado pelo
+ * gerar_graficos.py.
+ *
+ * Uso:
+ *   java metrics.BinaryMetricsReader logs/metrics_X.bin
+ *        -> um CSV por conexão: logs/metrics_X_conn<id>.csv (gravados em
+ *           lotes, um arquivo aberto por vez)
+ *   java metrics.BinaryMetricsReader logs/metrics_X.bin --conn 7 [--out arquivo.csv]
+ *        -> só a conexão 7, no arquivo dado ou na saída padrão
+ */
+public class BinaryMetricsReader implements AutoCloseable {
+
+    // texto acumulado na exportação antes de gravar os lotes (~16M caracteres)
+    private static final long MAX_PENDING_CHARS = 16L << 20;
+
+    /** Recebe cada linha decodificada (valores na ordem de getColumns()) */
+    public interface RowHandler {
+        void onRow(long connId, long[] values) throws IOException;
+    }
+
+    private final DataInputStream in;
+    private final String[] columns;
+    private final long openedAt;
+    private final List<String> strings = new ArrayList<>();
+    private final Map<Long, long[]> previous = new HashMap<>();
+
+    public BinaryMetricsReader(InputStream input) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(input, 64 * 1024));
+
+        byte[] magic = new byte[4];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryMetricsLog.MAGIC)) throw new IOException("não é um log TCPM");
+        int version = in.readUnsignedByte();
+        if (version != BinaryMetricsLog.VERSION) throw new IOException("versão não suportada: " + version);
+
+        columns = new String[(int) readVarint()];
+        if (columns.length > 63) throw new IOException("colunas demais para o mapa: " + columns.length);
+        for (int i = 0; i < columns.length; i++) columns[i] = readString();
+        openedAt = in.readLong();
+    }
+
+    public String[] getColumns() { return columns; }
+    public long getOpenedAt() { return openedAt; }
+
+    /** Texto de um id do dicionário (colunas status/algorithm) */
+    public String string(long id) {
+        return id >= 0 && id < strings.size() ? strings.get((int) id) : "";
+    }
+
+    /** Percorre o arquivo até o fim; um registro truncado no final é ignorado */
+    public void forEach(RowHandler handler) throws IOException {
+        while (true) {
+            int type;
+            try {
+                type = in.readUnsignedByte();
+            } catch (EOFException e) {
+                return;
+            }
+
+            try {
+                switch (type) {
+                    case BinaryMetricsLog.STRING: {
+                        long id = readVarint();
+                        String s = readString();
+                        if (id != strings.size()) throw new IOException("dicionário fora de ordem");
+                        strings.add(s);
+                        break;
+                    }
+                    case BinaryMetricsLog.ROW: {
+                        long conn = readVarint();
+                        long[] prev = previous.computeIfAbsent(conn, k -> new long[columns.length + 1]);
+                        long[] values = readRow(prev);
+                        System.arraycopy(values, 0, prev, 0, values.length);
+                        handler.onRow(conn, values);
+                        break;
+                    }
+                    case BinaryMetricsLog.CLOSE:
+                        previous.remove(readVarint());
+                        break;
+                    default:
+                        throw new IOException("registro desconhecido: " + type);
+                }
+            } catch (EOFException e) {
+                return; // escrita interrompida no meio do último registro
+            }
+        }
+    }
+
+    // mapa das colunas que mudaram; epoch_ms como delta do intervalo anterior
+    private long[] readRow(long[] prev) throws IOException {
+        long changed = readVarint();
+        long[] values = new long[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            long delta = (changed & (1L << i)) != 0 ? BinaryMetricsLog.unzigzag(readVarint()) : 0;
+            if (i == BinaryMetricsLog.EPOCH) {
+                delta += prev[columns.length];
+                prev[columns.length] = delta;
+            }
+            values[i] = prev[i] + delta;
+        }
+        return values;
+    }
+
+    /** Linha no formato do CSV original */
+    public String toCsv(long[] v) {
+        StringBuilder sb = new StringBuilder(128);
+        for (int i = 0; i < v.length; i++) {
+            if (i > 0) sb.append(',');
+            if (i == BinaryMetricsLog.STATUS || i == BinaryMetricsLog.ALGORITHM) sb.append(string(v[i]));
+            else sb.append(v[i]);
+        }
+        return sb.toString();
+    }
+
+    public String csvHeader() {
+        return String.join(",", columns);
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private long readVarint() throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new IOException("varint inválido");
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[(int) readVarint()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.out.println("Uso: java metrics.BinaryMetricsReader <arquivo.bin> [--conn id] [--out arquivo.csv]");
+            return;
+        }
+        String file = args[0];
+        Long onlyConn = null;
+        String out = null;
+        for (int i = 1; i + 1 < args.length; i += 2) {
+            if (args[i].equals("--conn")) onlyConn = Long.parseLong(args[i + 1]);
+            else if (args[i].equals("--out")) out = args[i + 1];
+        }
+
+        try (BinaryMetricsReader reader = new BinaryMetricsReader(new FileInputStream(file))) {
+            if (onlyConn != null) {
+                exportOne(reader, onlyConn, out);
+            } else {
+                exportAll(reader, file.replaceAll("\\.bin$", ""));
+            }
+        }
+    }
+
+    private static void exportOne(BinaryMetricsReader reader, long conn, String out) throws IOException {
+        PrintWriter w = out == null ? new PrintWriter(System.out) : new PrintWriter(new FileWriter(out));
+        w.println(reader.csvHeader());
+        reader.forEach((id, values) -> {
+            if (id == conn) w.println(reader.toCsv(values));
+        });
+        w.flush();
+        if (out != null) w.close();
+    }
+
+    private static void exportAll(BinaryMetricsReader reader, String base) throws IOException {
+        // linhas acumuladas por conexão e gravadas em lote (um arquivo aberto por vez):
+        // um soak com milhares de conexões não esgota os descritores
+        Map<Long, StringBuilder> pending = new LinkedHashMap<>();
+        Set<Long> exported = new HashSet<>();
+        Set<Long> created = new HashSet<>();
+        List<Long> order = new ArrayList<>();
+        long[] pendingChars = {0};
+        String nl = System.lineSeparator();
+
+        reader.forEach((id, values) -> {
+            StringBuilder sb = pending.computeIfAbsent(id, k -> new StringBuilder());
+            if (exported.add(id)) {
+                order.add(id);
+                sb.append(reader.csvHeader()).append(nl);
+            }
+            int before = sb.length();
+            sb.append(reader.toCsv(values)).append(nl);
+            pendingChars[0] += sb.length() - before;
+            if (pendingChars[0] >= MAX_PENDING_CHARS) {
+                writePending(base, pending, created);
+                pendingChars[0] = 0;
+            }
+        });
+        writePending(base, pending, created);
+        for (Long id : order) System.out.println("[EXPORT] " + base + "_conn" + id + ".csv");
+    }
+
+    private static void writePending(String base, Map<Long, StringBuilder> pending, Set<Long> created)
+            throws IOException {
+        for (Map.Entry<Long, StringBuilder> e : pending.entrySet()) {
+            // primeiro lote da conexão cria (ou trunca) o arquivo; os seguintes acrescentam
+            boolean append = !created.add(e.getKey());
+            try (FileWriter w = new FileWriter(base + "_conn" + e.getKey() + ".csv", append)) {
+                w.append(e.getValue());
+            }
+        }
+        pending.clear();
+    }
+}
@@ -0,0 +1,118 @@
+package metrics;
+
+import java.net.Inet6Address;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Identificação de uma conexão dentro dos segmentos de captura.
+ *
+ * Os pacotes de todas as conexões vão para o mesmo segmento; cada um recebe
+ * um cabeçalho IP + TCP sintetizado com os endpoints reais (cliente e
+ * backend) e números de sequência contínuos por sentido, para que o
+ * Wireshark separe e remonte cada fluxo ("Follow TCP Stream").
+ *
+ * A sequência avança no relay para todo pacote, gravado ou não: bytes fora
+ * da amostra, da janela ou descartados aparecem como lacuna no Wireshark
+ * ("previous segment not captured"). Cada sentido tem um único produtor
+ * (a thread/loop do pipe; o eco só começa depois do C→S), então basta
+ * volatile.
+ */
+public final class CaptureFlow {
+
+    private static final AtomicLong IDS = new AtomicLong();
+    // IPv4 literal: não consulta DNS e não muda a família do fluxo
+    private static final InetSocketAddress UNCONNECTED = new InetSocketAddress("0.0.0.0", 0);
+
+    private final long id = IDS.incrementAndGet();
+    private final InetSocketAddress client;
+    private final InetSocketAddress server;
+    private final boolean ipv6;
+
+    // CapturePolicy: dentro da amostra 1-em-N e até quando um gatilho mantém a captura
+    private final boolean sampled = CapturePolicy.shared().sampleNewFlow();
+    private volatile long triggeredUntil = 0;
+
+    // próximo número de sequência em cada sentido
+    private volatile int seqFromClient;
+    private volatile int seqFromServer;
+
+    private CaptureFlow(InetSocketAddress client, InetSocketAddress server) {
+        this.client = client;
+        this.server = server;
+        this.ipv6 = client.getAddress() instanceof Inet6Address || server.getAddress() instanceof Inet6Address;
+
+        // ISN distinto por fluxo, só para não começarem todos em 0
+        int isn = (int) (id * 0x9E3779B9L);
+        seqFromClient = isn;
+        seqFromServer = isn ^ 0x5BD1E995;
+    }
+
+    /** Fluxo do cliente para o backend; sockets ainda não conectados viram 0.0.0.0:0 */
+    public static CaptureFlow of(Socket client, Socket server) {
+        return new CaptureFlow(remote(client), remote(server));
+    }
+
+    public static CaptureFlow of(InetSocketAddress client, InetSocketAddress server) {
+        return new CaptureFlow(client, server);
+    }
+
+    private static InetSocketAddress remote(Socket s) {
+        if (s != null && s.getInetAddress() != null) return new InetSocketAddress(s.getInetAddress(), s.getPort());
+        return UNCONNECTED;
+    }
+
+    public long getId() { return id; }
+    public InetSocketAddress getClient() { return client; }
+    public InetSocketAddress getServer() { return server; }
+    boolean isIpv6() { return ipv6; }
+    public boolean isSampled() { return sampled; }
+    long triggeredUntil() { return triggeredUntil; }
+
+    void triggerUntil(long until) {
+        if (until > triggeredUntil) triggeredUntil = until;
+    }
+
+    /** C→S e o eco (bytes lidos do cliente) saem do cliente; S→C sai do backend */
+    static boolean fromClient(Direction dir) {
+        return dir != Direction.S2C;
+    }
+
+    InetSocketAddress source(Direction dir) { return fromClient(dir) ? client : server; }
+    InetSocketAddress destination(Direction dir) { return fromClient(dir) ? server : client; }
+
+    /** Reserva 'len' bytes de sequência no sentido dado e retorna o primeiro */
+    int advance(Direction dir, int len) {
+        if (fromClient(dir)) {
+            int seq = seqFromClient;
+            seqFromClient = seq + len;
+            return seq;
+        }
+        int seq = seqFromServer;
+        seqFromServer = seq + len;
+        return seq;
+    }
+
+    /** ACK = próximo byte esperado do outro sentido */
+    int ack(Direction dir) {
+        return fromClient(dir) ? seqFromServer : seqFromClient;
+    }
+
+    /** Endereço em 4 ou 16 bytes, conforme a família do fluxo (IPv4 mapeado em IPv6 se preciso) */
+    byte[] addressBytes(InetSocketAddress a) {
+        byte[] raw = a.getAddress() == null ? new byte[4] : a.getAddress().getAddress();
+        if (!ipv6 || raw.length == 16) return raw;
+
+        byte[] mapped = new byte[16];
+        mapped[10] = (byte) 0xff;
+        mapped[11] = (byte) 0xff;
+        System.arraycopy(raw, 0, mapped, 12, 4);
+        return mapped;
+    }
+
+    @Override
+    public String toString() {
+        return "flow#" + id + " " + client + " -> " + server + (ipv6 ? " (v6)" : "");
+    }
+}
@@ -0,0 +1,252 @@
+package metrics;
+
+import buffer.BufferPool;
+import network.Env;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Captura assíncrona: as threads do relay copiam o payload (com timestamp)
+ * para um buffer do pool e o enfileiram num CaptureRing; uma única thread
+ * "PCAP-Writer" esvazia a fila em lotes de até MAX_BATCH registros e os
+ * grava nos segmentos mapeados do PcapSegmentStore. O disco nunca fica no
+ * caminho do relay.
+ *
+ * Fila cheia (CAPTURE_RING_SLOTS registros ou CAPTURE_RING_MB de payload
+ * pendente):
+ *   CAPTURE_OVERFLOW=drop  (padrão) o pacote é descartado e contado
+ *   CAPTURE_OVERFLOW=block o relay espera a thread de escrita abrir espaço
+ */
+public final class CapturePipeline {
+
+    public enum Overflow { DROP, BLOCK }
+
+    /** Um pacote copiado do relay */
+    static final class Record {
+        final PCAPWriter target;
+        final ByteBuffer data;
+        final int origLen;
+        final int seq;
+        final int ack;
+        final long timestampMs;
+
+        Record(PCAPWriter target, ByteBuffer data, int origLen, int seq, int ack, long timestampMs) {
+            this.target = target;
+            this.data = data;
+            this.origLen = origLen;
+            this.seq = seq;
+            this.ack = ack;
+            this.timestampMs = timestampMs;
+        }
+    }
+
+    private static final int MAX_BATCH = 1024;
+    private static final long IDLE_PARK_NS = 5_000_000;   // sem pacotes: acorda a cada 5ms
+    private static final long BLOCK_PARK_NS = 100_000;    // produtor esperando espaço
+
+    private static final CapturePipeline SHARED = new CapturePipeline(
+            Env.intValue("CAPTURE_RING_SLOTS", 8192),
+            Env.intValue("CAPTURE_RING_MB", 32) * 1024L * 1024,
+            overflowFromEnv());
+
+    private final CaptureRing<Record> ring;
+    private final long maxPendingBytes;
+    private final Overflow overflow;
+    private final AtomicLong pendingBytes = new AtomicLong();
+    private final PcapSegmentStore store = PcapSegmentStore.fromEnv(); // só a thread de escrita
+
+    private volatile Thread writer;
+    private volatile boolean writerParked = false;
+    private volatile boolean stopping = false;
+
+    private final LongAdder captured = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder droppedBytes = new LongAdder();
+    private final LongAdder blocked = new LongAdder();
+    private volatile long written = 0;
+    private volatile long writtenBytes = 0;
+    private volatile long writes = 0;
+    private volatile int maxDepth = 0;
+
+    private CapturePipeline(int slots, long maxPendingBytes, Overflow overflow) {
+        this.ring = new CaptureRing<>(slots);
+        this.maxPendingBytes = Math.max(BufferPool.MAX_SIZE, maxPendingBytes); // cabe ao menos um pacote
+        this.overflow = overflow;
+    }
+
+    public static CapturePipeline shared() {
+        return SHARED;
+    }
+
+    /** Enfileira os 'len' primeiros bytes de 'data'; false se o pacote foi descartado */
+    boolean capture(PCAPWriter target, byte[] data, int off, int len, int seq, int ack) {
+        return enqueue(target, null, data, off, len, seq, ack);
+    }
+
+    /** Enfileira os bytes [position, limit) sem alterar a posição de 'data' */
+    boolean capture(PCAPWriter target, ByteBuffer data, int seq, int ack) {
+        return enqueue(target, data, null, 0, data.remaining(), seq, ack);
+    }
+
+    private boolean enqueue(PCAPWriter target, ByteBuffer src, byte[] array, int off, int len, int seq, int ack) {
+        startIfNeeded();
+        // snaplen da CapturePolicy; acima de 256KB (maior buffer do pool) também trunca
+        int n = Math.min(CapturePolicy.shared().captureLength(len), BufferPool.MAX_SIZE);
+
+        // orçamento de bytes antes da cópia: descartar sai barato
+        while (pendingBytes.addAndGet(n) > maxPendingBytes) {
+            pendingBytes.addAndGet(-n);
+            if (!waitForSpace(n)) return false;
+        }
+
+        ByteBuffer copy = BufferPool.HEAP.acquire(n);
+        if (array != null) {
+            copy.put(array, off, n);
+        } else {
+            ByteBuffer view = src.duplicate();
+            view.limit(view.position() + n);
+            copy.put(view);
+        }
+        copy.flip();
+
+        Record r = new Record(target, copy, len, seq, ack, System.currentTimeMillis());
+        while (!ring.offer(r)) {
+            if (!waitForSpace(n)) {
+                BufferPool.HEAP.release(copy);
+                pendingBytes.addAndGet(-n);
+                return false;
+            }
+        }
+
+        captured.increment();
+        int depth = ring.size();
+        if (depth > maxDepth) maxDepth = depth; // aproximado, só para diagnóstico
+        wakeWriter();
+        return true;
+    }
+
+    /** DROP: conta o descarte e retorna false; BLOCK: espera um pouco e retorna true */
+    private boolean waitForSpace(int n) {
+        if (overflow == Overflow.DROP || stopping) {
+            dropped.increment();
+            droppedBytes.add(n);
+            return false;
+        }
+        blocked.increment();
+        wakeWriter();
+        LockSupport.parkNanos(BLOCK_PARK_NS);
+        return true;
+    }
+
+    /** Espera a fila esvaziar (testes e benchmarks); false se o tempo acabou */
+    public boolean awaitIdle(long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!ring.isEmpty() || pendingBytes.get() > 0) {
+            if (System.currentTimeMillis() > deadline) return false;
+            wakeWriter();
+            LockSupport.parkNanos(1_000_000);
+        }
+        return true;
+    }
+
+    private void wakeWriter() {
+        Thread w = writer;
+        if (writerParked && w != null) LockSupport.unpark(w);
+    }
+
+    private synchronized void startIfNeeded() {
+        if (writer != null) return;
+        Thread t = Thread.ofPlatform().name("PCAP-Writer").daemon(true).unstarted(this::loop);
+        writer = t;
+        t.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "PCAP-Writer-Close"));
+    }
+
+    private void shutdown() {
+        stopping = true;
+        Thread w = writer;
+        if (w == null) return;
+        LockSupport.unpark(w);
+        try {
+            w.join(2000);
+        } catch (InterruptedException ignored) {}
+    }
+
+    private void loop() {
+        List<Record> batch = new ArrayList<>(MAX_BATCH);
+        while (true) {
+            Record r;
+            while (batch.size() < MAX_BATCH && (r = ring.poll()) != null) batch.add(r);
+
+            if (batch.isEmpty()) {
+                if (stopping) {
+                    store.close();
+                    return;
+                }
+                store.tick(System.currentTimeMillis());
+                writerParked = true;
+                if (ring.isEmpty()) LockSupport.parkNanos(IDLE_PARK_NS);
+                writerParked = false;
+                continue;
+            }
+
+            writeBatch(batch);
+            batch.clear();
+        }
+    }
+
+    private void writeBatch(List<Record> batch) {
+        for (Record r : batch) {
+            int n = r.data.remaining();
+            long bytes = store.append(r.target.getFlow(), r.target.getDirection(), r);
+            if (bytes > 0) {
+                written++;
+                writtenBytes += bytes;
+            } else {
+                dropped.increment(); // sem segmento (erro de disco)
+                droppedBytes.add(n);
+            }
+            pendingBytes.addAndGet(-n);
+            BufferPool.HEAP.release(r.data);
+        }
+        writes++;
+    }
+
+    public Overflow getOverflow() { return overflow; }
+    public long getCaptured() { return captured.sum(); }
+    public long getDropped() { return dropped.sum(); }
+    public long getDroppedBytes() { return droppedBytes.sum(); }
+    public long getBlocked() { return blocked.sum(); }
+    public long getWritten() { return written; }
+    public long getWrittenBytes() { return writtenBytes; }
+    public long getWrites() { return writes; }
+    public long getSegments() { return store.getSegments(); }
+    public long getDeletedSegments() { return store.getDeleted(); }
+    public int getDepth() { return ring.size(); }
+    public int getMaxDepth() { return maxDepth; }
+    public int getCapacity() { return ring.capacity(); }
+
+    private static Overflow overflowFromEnv() {
+        String v = System.getenv("CAPTURE_OVERFLOW");
+        if (v == null || v.isBlank()) return Overflow.DROP;
+        try {
+            return Overflow.valueOf(v.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("[PCAP] CAPTURE_OVERFLOW inválido: " + v + ". Usando DROP.");
+            return Overflow.DROP;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Capture{" + overflow + " fila=" + getDepth() + "/" + getCapacity() + " max=" + maxDepth +
+                " capturados=" + getCaptured() + " gravados=" + written + " lotes=" + writes +
+                " segmentos=" + getSegments() + " apagados=" + getDeletedSegments() +
+                " descartados=" + getDropped() + " bloqueios=" + getBlocked() + "}";
+    }
+}
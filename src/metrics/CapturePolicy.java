@@ -0,0 +1,119 @@
+package metrics;
+
+import network.Env;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decide o que a captura grava, para que ela possa ficar ligada em
+ * produção sem custar a banda inteira do payload em disco.
+ *
+ * - CAPTURE_SNAPLEN (padrão 65535): bytes de payload guardados por pacote;
+ *   o resto só entra no tamanho original (orig_len) e na sequência TCP
+ * - CAPTURE_SAMPLE_N (padrão 1): captura 1 a cada N conexões
+ * - CAPTURE_WINDOW_SECONDS / CAPTURE_WINDOW_EVERY_SECONDS: captura só os
+ *   primeiros W segundos de cada período de E segundos (desligado com 0)
+ * - CAPTURE_MODE=always (padrão) | trigger: em 'trigger' nada é gravado
+ *   até um gatilho disparar
+ * - Gatilhos (por conexão, por CAPTURE_TRIGGER_SECONDS, padrão 30): o
+ *   AlgorithmSelector troca para SAFE, ou a variação do RTT passa de
+ *   CAPTURE_RTTVAR_TRIGGER_US (padrão 20000). Valem mesmo para conexões
+ *   fora da amostra e fora da janela.
+ */
+public final class CapturePolicy {
+
+    private static final CapturePolicy SHARED = new CapturePolicy(
+            Env.intValue("CAPTURE_SNAPLEN", PcapSegmentStore.SNAPLEN),
+            Env.intValue("CAPTURE_SAMPLE_N", 1),
+            Env.intValue("CAPTURE_WINDOW_SECONDS", 0),
+            Env.intValue("CAPTURE_WINDOW_EVERY_SECONDS", 0),
+            "trigger".equalsIgnoreCase(System.getenv("CAPTURE_MODE")),
+            Env.intValue("CAPTURE_TRIGGER_SECONDS", 30),
+            Env.intValue("CAPTURE_RTTVAR_TRIGGER_US", 20_000));
+
+    private final int snaplen;
+    private final int sampleN;
+    private final long windowMs;
+    private final long everyMs;
+    private final boolean triggerOnly;
+    private final long triggerMs;
+    private final long rttVarTriggerUs;
+    private final long startedAt = System.currentTimeMillis();
+
+    private final AtomicLong flows = new AtomicLong();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder triggers = new LongAdder();
+
+    CapturePolicy(int snaplen, int sampleN, int windowSeconds, int everySeconds,
+                  boolean triggerOnly, int triggerSeconds, long rttVarTriggerUs) {
+        this.snaplen = Math.max(1, Math.min(snaplen, PcapSegmentStore.SNAPLEN));
+        this.sampleN = Math.max(1, sampleN);
+        this.windowMs = Math.max(0, windowSeconds) * 1000L;
+        this.everyMs = Math.max(windowSeconds, everySeconds) * 1000L;
+        this.triggerOnly = triggerOnly;
+        this.triggerMs = Math.max(1, triggerSeconds) * 1000L;
+        this.rttVarTriggerUs = rttVarTriggerUs;
+    }
+
+    public static CapturePolicy shared() {
+        return SHARED;
+    }
+
+    /** Chamado uma vez por conexão: entra na amostra 1 a cada N */
+    boolean sampleNewFlow() {
+        return flows.getAndIncrement() % sampleN == 0;
+    }
+
+    /** Decisão por pacote; só leituras de campos, sem lock */
+    boolean shouldCapture(CaptureFlow flow, long now) {
+        boolean capture = flow.triggeredUntil() > now
+                || (!triggerOnly && flow.isSampled() && inWindow(now));
+        if (!capture) skipped.increment();
+        return capture;
+    }
+
+    private boolean inWindow(long now) {
+        if (windowMs <= 0 || everyMs <= 0) return true;
+        return (now - startedAt) % everyMs < windowMs;
+    }
+
+    /** Bytes de payload a copiar de um pacote de 'len' bytes */
+    int captureLength(int len) {
+        if (len <= snaplen) return len;
+        truncated.increment();
+        return snaplen;
+    }
+
+    /** Liga a captura da conexão por CAPTURE_TRIGGER_SECONDS */
+    public void trigger(CaptureFlow flow, String reason) {
+        long now = System.currentTimeMillis();
+        boolean wasActive = flow.triggeredUntil() > now;
+        flow.triggerUntil(now + triggerMs);
+        if (wasActive) return;
+
+        triggers.increment();
+        System.out.println("[PCAP] captura disparada (" + reason + ") " + flow + " por " + triggerMs / 1000 + "s");
+    }
+
+    /** Gatilho de RTTVAR; barato o bastante para rodar a cada amostra de RTT */
+    public void onRttVar(CaptureFlow flow, double rttVarUs) {
+        if (rttVarTriggerUs > 0 && rttVarUs > rttVarTriggerUs && flow.triggeredUntil() <= System.currentTimeMillis()) {
+            trigger(flow, "RTTVAR=" + (long) rttVarUs + "µs");
+        }
+    }
+
+    public int getSnaplen() { return snaplen; }
+    public long getSkipped() { return skipped.sum(); }
+    public long getTruncated() { return truncated.sum(); }
+    public long getTriggers() { return triggers.sum(); }
+
+    @Override
+    public String toString() {
+        return "CapturePolicy{" + (triggerOnly ? "trigger" : "always") + " snaplen=" + snaplen +
+                " amostra=1/" + sampleN +
+                (windowMs > 0 ? " janela=" + windowMs / 1000 + "s/" + everyMs / 1000 + "s" : "") +
+                " ignorados=" + getSkipped() + " truncados=" + getTruncated() + " gatilhos=" + getTriggers() + "}";
+    }
+}
@@ -0,0 +1,77 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fila circular limitada, vários produtores e um consumidor (MPSC).
+ *
+ * Cada slot tem um número de sequência: o produtor reserva a posição com
+ * CAS no 'tail', grava o item e publica a sequência; o consumidor só lê o
+ * slot quando a sequência indica que ele foi publicado. Sem locks, então o
+ * relay nunca espera pelo disco, só pela própria CAS.
+ */
+final class CaptureRing<T> {
+
+    private final Object[] items;
+    private final AtomicLongArray sequence;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head = 0; // só o consumidor escreve
+
+    CaptureRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1; // potência de 2
+        this.items = new Object[size];
+        this.sequence = new AtomicLongArray(size);
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) sequence.set(i, i);
+    }
+
+    /** false se a fila está cheia */
+    boolean offer(T item) {
+        long pos = tail.get();
+        while (true) {
+            int i = (int) (pos & mask);
+            long diff = sequence.get(i) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    items[i] = item;
+                    sequence.set(i, pos + 1); // publica
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get(); // outro produtor já avançou
+            }
+        }
+    }
+
+    /** Próximo item publicado, ou null; chamado só pela thread consumidora */
+    @SuppressWarnings("unchecked")
+    T poll() {
+        long h = head;
+        int i = (int) (h & mask);
+        if (sequence.get(i) != h + 1) return null;
+
+        T item = (T) items[i];
+        items[i] = null;
+        sequence.set(i, h + items.length); // libera o slot para a próxima volta
+        head = h + 1;
+        return item;
+    }
+
+    boolean isEmpty() {
+        return sequence.get((int) (head & mask)) != head + 1;
+    }
+
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return items.length;
+    }
+}
@@ -0,0 +1,25 @@
+package metrics;
+
+/** Sentido do tráfego contado pelas métricas */
+public enum Direction {
+
+    C2S("C→S"),
+    S2C("S→C"),
+    ECHO("ECHO");
+
+    private final String label;
+
+    Direction(String label) {
+        this.label = label;
+    }
+
+    /** Nome usado em logs, threads e arquivos pcap */
+    public String label() {
+        return label;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
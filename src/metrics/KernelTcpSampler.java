@@ -0,0 +1,234 @@
+package metrics;
+
+import network.Env;
+import network.ThreadMode;
+import sockets.NativeTcp;
+import sockets.TcpInfo;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Amostrador compartilhado de estatísticas TCP do kernel (Linux).
+ *
+ * Uma única thread lê /proc/net/tcp e /proc/net/tcp6 a cada intervalo e
+ * publica cwnd, ssthresh, retransmissões e bytes sem ACK de todas as
+ * conexões registradas, num mapa concorrente chaveado pela 4-tupla. Nenhum
+ * processo é criado; sem /proc (Windows, macOS) o amostrador fica inativo.
+ *
+ * Com a camada nativa ativa (NativeTcp), a passada lê getsockopt(TCP_INFO)
+ * de cada socket registrado em vez de varrer o /proc: custa uma chamada
+ * por conexão em vez de uma leitura de todas as conexões do host, e traz o
+ * RTT medido pelo kernel. No /proc/net/tcp o RTT não aparece e rttUs fica -1.
+ *
+ * Intervalo: KERNEL_SAMPLE_MS (padrão 500ms).
+ */
+public final class KernelTcpSampler {
+
+    private static final Path[] SOURCES = { Paths.get("/proc/net/tcp"), Paths.get("/proc/net/tcp6") };
+    private static final Path CONGESTION_CONTROL = Paths.get("/proc/sys/net/ipv4/tcp_congestion_control");
+
+    // /proc/net/tcp reporta o rto em clock ticks (USER_HZ = 100 no Linux)
+    private static final long MS_PER_TICK = 10;
+
+    private static final KernelTcpSampler SHARED = new KernelTcpSampler(intervalFromEnv());
+
+    private final long intervalMs;
+    private final boolean available;
+    private final boolean tcpInfo = NativeTcp.shared().isAvailable();
+
+    private final Map<String, TCPMetrics> tracked = new ConcurrentHashMap<>();
+    private final Map<String, Socket> sockets = new ConcurrentHashMap<>(); // só com TCP_INFO
+    private final Map<String, KernelTcpStats> stats = new ConcurrentHashMap<>();
+
+    private volatile boolean started = false;
+    private volatile long passes = 0;
+    private volatile long lastPassMicros = 0;
+
+    private KernelTcpSampler(long intervalMs) {
+        this.intervalMs = intervalMs;
+        this.available = tcpInfo || Files.isReadable(SOURCES[0]);
+        if (!available) System.out.println("[KERNEL] /proc/net/tcp indisponível; estatísticas do kernel desativadas");
+        else System.out.println("[KERNEL] fonte: " + (tcpInfo ? "TCP_INFO por socket" : "/proc/net/tcp"));
+    }
+
+    public static KernelTcpSampler shared() {
+        return SHARED;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    /**
+     * Passa a amostrar o socket e publicar no TCPMetrics dado. Retorna a chave
+     * (4-tupla) para o untrack, ou null se o socket não pode ser amostrado;
+     * a chave é guardada porque depois do close o socket perde o endereço local.
+     */
+    public String track(Socket socket, TCPMetrics metrics) {
+        if (!available || socket == null || !socket.isConnected()) return null;
+        String k = key(socket);
+        tracked.put(k, metrics);
+        if (tcpInfo) sockets.put(k, socket);
+        startIfNeeded();
+        return k;
+    }
+
+    public void untrack(String key) {
+        if (key == null) return;
+        tracked.remove(key);
+        sockets.remove(key);
+        stats.remove(key);
+    }
+
+    /** Última amostra publicada para a chave, ou null se ainda não houve */
+    public KernelTcpStats get(String key) {
+        return key == null ? null : stats.get(key);
+    }
+
+    public int getTrackedCount() { return tracked.size(); }
+    public long getPasses() { return passes; }
+    public long getLastPassMicros() { return lastPassMicros; }
+
+    /** Algoritmo de congestionamento padrão do sistema (lido do /proc), ou null */
+    public static String defaultCongestionControl() {
+        try {
+            String algo = Files.readString(CONGESTION_CONTROL).trim();
+            return algo.isEmpty() ? null : algo;
+        } catch (IOException | SecurityException e) {
+            return null;
+        }
+    }
+
+    private synchronized void startIfNeeded() {
+        if (started) return;
+        started = true;
+        ThreadMode.PLATFORM.startDaemon("Kernel-TCP-Sampler", this::loop);
+    }
+
+    private void loop() {
+        while (true) {
+            try {
+                if (!tracked.isEmpty()) samplePass();
+                Thread.sleep(intervalMs);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                System.out.println("[KERNEL] Falha lendo /proc: " + e.getMessage());
+            }
+        }
+    }
+
+    /** Uma leitura de todas as fontes; publica só as conexões registradas */
+    void samplePass() throws IOException {
+        long start = System.nanoTime();
+        long now = System.currentTimeMillis();
+
+        if (tcpInfo) {
+            sockets.forEach((k, socket) -> sampleSocket(k, socket, now));
+            passes++;
+            lastPassMicros = (System.nanoTime() - start) / 1000;
+            return;
+        }
+
+        for (Path source : SOURCES) {
+            if (!Files.isReadable(source)) continue;
+            try (BufferedReader reader = Files.newBufferedReader(source)) {
+                reader.readLine(); // cabeçalho
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    parseLine(line.trim(), now);
+                }
+            }
+        }
+
+        passes++;
+        lastPassMicros = (System.nanoTime() - start) / 1000;
+    }
+
+    /*
+     * sl local rem st tx_queue:rx_queue tr:tm->when retrnsmt uid timeout inode
+     * ref ptr rto ato qack cwnd ssthresh
+     */
+    private void parseLine(String line, long now) {
+        String[] f = line.split("\\s+");
+        if (f.length < 17) return;
+
+        String k;
+        try {
+            k = procKey(f[1], f[2]);
+        } catch (Exception e) {
+            return;
+        }
+
+        TCPMetrics metrics = tracked.get(k);
+        if (metrics == null) return;
+
+        String[] queues = f[4].split(":");
+        long txQueue = Long.parseLong(queues[0], 16);
+        long rxQueue = Long.parseLong(queues[1], 16);
+        int retransmits = Integer.parseInt(f[6], 16);
+        long rtoMs = Long.parseLong(f[12]) * MS_PER_TICK;
+        int cwnd = Integer.parseInt(f[15]);
+        int ssthresh = Integer.parseInt(f[16]);
+
+        KernelTcpStats s = new KernelTcpStats(now, cwnd, ssthresh, retransmits, txQueue, rxQueue, rtoMs, -1);
+        stats.put(k, s);
+        metrics.onKernelStats(s);
+    }
+
+    /** getsockopt(TCP_INFO) de um socket, nas mesmas unidades do /proc */
+    private void sampleSocket(String k, Socket socket, long now) {
+        TCPMetrics metrics = tracked.get(k);
+        TcpInfo info = NativeTcp.shared().tcpInfo(socket);
+        if (metrics == null || info == null) return;
+
+        // o /proc imprime -1 enquanto o ssthresh é o inicial (infinito)
+        int ssthresh = info.sndSsthresh() >= 0xFFFF ? -1 : info.sndSsthresh();
+        KernelTcpStats s = new KernelTcpStats(now, info.sndCwnd(), ssthresh, info.retransmits(),
+                info.outQueueBytes(), info.inQueueBytes(), info.rtoUs() / 1000, info.rttUs());
+        stats.put(k, s);
+        metrics.onKernelStats(s);
+    }
+
+    // -------------------- chaves --------------------
+
+    static String key(Socket s) {
+        return key(s.getLocalAddress(), s.getLocalPort(), s.getInetAddress(), s.getPort());
+    }
+
+    static String key(InetAddress local, int localPort, InetAddress remote, int remotePort) {
+        return local.getHostAddress() + ":" + localPort + ">" + remote.getHostAddress() + ":" + remotePort;
+    }
+
+    /** "0100007F:1F40" -> InetAddress + porta; IPv4 mapeado em IPv6 vira IPv4, como no Socket */
+    private static String procKey(String local, String remote) throws Exception {
+        int lc = local.indexOf(':');
+        int rc = remote.indexOf(':');
+        return key(procAddress(local.substring(0, lc)), Integer.parseInt(local.substring(lc + 1), 16),
+                procAddress(remote.substring(0, rc)), Integer.parseInt(remote.substring(rc + 1), 16));
+    }
+
+    private static InetAddress procAddress(String hex) throws Exception {
+        // o kernel imprime cada palavra de 32 bits na ordem do host (little-endian)
+        byte[] addr = new byte[hex.length() / 2];
+        for (int word = 0; word < addr.length / 4; word++) {
+            for (int i = 0; i < 4; i++) {
+                int pos = word * 8 + (3 - i) * 2;
+                addr[word * 4 + i] = (byte) Integer.parseInt(hex.substring(pos, pos + 2), 16);
+            }
+        }
+        return InetAddress.getByAddress(addr);
+    }
+
+    private static long intervalFromEnv() {
+        return Math.max(50, Env.intValue("KERNEL_SAMPLE_MS", 500));
+    }
+}
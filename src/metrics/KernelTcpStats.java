@@ -0,0 +1,36 @@
+package metrics;
+
+/**
+ * Amostra do estado de um socket TCP segundo o kernel.
+ * Campos indisponíveis na fonte valem -1.
+ */
+public final class KernelTcpStats {
+
+    public final long sampledAt;     // epoch ms
+    public final int cwnd;           // segmentos
+    public final int ssthresh;       // segmentos (-1 durante o slow start inicial)
+    public final int retransmits;    // retransmissões pendentes do timer atual
+    public final long unackedBytes;  // tx_queue: enviados ou na fila, ainda sem ACK
+    public final long rxQueueBytes;  // recebidos, ainda não lidos pela aplicação
+    public final long rtoMs;
+    public final long rttUs;         // TCP_INFO; -1 na fonte /proc/net/tcp, que não expõe RTT
+
+    public KernelTcpStats(long sampledAt, int cwnd, int ssthresh, int retransmits,
+                          long unackedBytes, long rxQueueBytes, long rtoMs, long rttUs) {
+        this.sampledAt = sampledAt;
+        this.cwnd = cwnd;
+        this.ssthresh = ssthresh;
+        this.retransmits = retransmits;
+        this.unackedBytes = unackedBytes;
+        this.rxQueueBytes = rxQueueBytes;
+        this.rtoMs = rtoMs;
+        this.rttUs = rttUs;
+    }
+
+    @Override
+    public String toString() {
+        return "cwnd=" + cwnd + " ssthresh=" + ssthresh + " retrans=" + retransmits
+                + " unacked=" + unackedBytes + " rxq=" + rxQueueBytes + " rto=" + rtoMs + "ms"
+                + (rttUs >= 0 ? " rtt=" + rttUs + "us" : "");
+    }
+}
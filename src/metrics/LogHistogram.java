@@ -0,0 +1,186 @@
+package metrics;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma log-linear (estilo HDR) para valores inteiros não negativos.
+ *
+ * Cada potência de 2 é dividida em 16 faixas lineares, então o erro
+ * relativo de um percentil é no máximo ~6%. A faixa coberta vai até 2^maxExp
+ * (por tipo, ver RelayHistogram); valores acima caem na última faixa e o
+ * máximo exato é guardado à parte. record() não aloca e não usa lock:
+ * incremento atômico da faixa, LongAdder para contagem e soma e CAS do
+ * máximo só quando ele sobe. Um histograma é de uma conexão (poucas
+ * threads); a visão do processo é a soma deles (MetricsRegistry).
+ */
+public class LogHistogram {
+
+    static final int SUB_BITS = 4;
+    static final int SUB_COUNT = 1 << SUB_BITS;
+    /** Faixa dos histogramas avulsos (testes, benchmarks); os do relay usam a do RelayHistogram */
+    static final int DEFAULT_MAX_EXP = 40;
+
+    private final int maxExp;
+    private final AtomicLongArray counts;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+
+    public LogHistogram() {
+        this(DEFAULT_MAX_EXP);
+    }
+
+    /** Faixas exatas até 2^maxExp; cada unidade a mais custa 16 contadores */
+    public LogHistogram(int maxExp) {
+        this.maxExp = maxExp;
+        this.counts = new AtomicLongArray(buckets(maxExp));
+    }
+
+    static int buckets(int maxExp) {
+        return (maxExp - SUB_BITS + 2) * SUB_COUNT;
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts.incrementAndGet(bucketOf(value, maxExp));
+        count.increment();
+        sum.add(value);
+
+        raiseMax(value);
+    }
+
+    /** Soma as amostras de um snapshot (mesmo formato), sem lock: acumulado das conexões encerradas */
+    public void add(Snapshot s) {
+        for (int i = 0; i < s.counts.length; i++) {
+            if (s.counts[i] != 0) counts.addAndGet(i, s.counts[i]);
+        }
+        count.add(s.count);
+        sum.add(s.sum);
+        if (s.count > 0) raiseMax(s.max);
+    }
+
+    private void raiseMax(long value) {
+        long m = max.get();
+        while (value > m && !max.compareAndSet(m, value)) m = max.get();
+    }
+
+    static int bucketOf(long v, int maxExp) {
+        if (v < SUB_COUNT) return (int) v;
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        if (exp > maxExp) return buckets(maxExp) - 1;
+        int sub = (int) ((v >>> (exp - SUB_BITS)) & (SUB_COUNT - 1));
+        return (exp - SUB_BITS + 1) * SUB_COUNT + sub;
+    }
+
+    /** Maior valor que cai na faixa 'bucket' */
+    static long upperBound(int bucket) {
+        if (bucket < SUB_COUNT) return bucket;
+        int exp = bucket / SUB_COUNT + SUB_BITS - 1;
+        long sub = bucket % SUB_COUNT;
+        long width = 1L << (exp - SUB_BITS);
+        return (1L << exp) + (sub + 1) * width - 1;
+    }
+
+    public long getCount() { return count.sum(); }
+
+    /** Cópia consistente o bastante para relatórios (as faixas são lidas uma a uma) */
+    public Snapshot snapshot() {
+        return sum(List.of(this));
+    }
+
+    /**
+     * Soma de histogramas com a mesma faixa, acumulada direto num único array
+     * (sem um snapshot intermediário por histograma): agregado do processo.
+     */
+    static Snapshot sum(List<LogHistogram> histograms) {
+        long[] c = new long[histograms.get(0).counts.length()];
+        long n = 0, s = 0, m = 0;
+        for (LogHistogram h : histograms) {
+            for (int i = 0; i < c.length; i++) {
+                long v = h.counts.get(i);
+                c[i] += v;
+                n += v;
+            }
+            s += h.sum.sum();
+            m = Math.max(m, h.max.get());
+        }
+        return new Snapshot(c, n, s, m);
+    }
+
+    /** Snapshot imutável; pode ser somado a outros (ex.: todas as conexões) */
+    public static final class Snapshot {
+
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * Só as amostras registradas depois de 'earlier' (um snapshot anterior
+         * do mesmo histograma). O máximo continua sendo o do acumulado.
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] c = new long[counts.length];
+            long n = 0;
+            for (int i = 0; i < c.length; i++) {
+                c[i] = Math.max(0, counts[i] - earlier.counts[i]);
+                n += c[i];
+            }
+            return new Snapshot(c, n, Math.max(0, sum - earlier.sum), max);
+        }
+
+        public long getCount() { return count; }
+        public long getMax() { return max; }
+        public long getSum() { return sum; }
+
+        /** Maior limite 2^k - 1 em que countAtOrBelow() ainda é exato para esta faixa */
+        public long getRangeLimit() {
+            int maxExp = counts.length / SUB_COUNT + SUB_BITS - 2;
+            return (1L << maxExp) - 1;
+        }
+
+        /**
+         * Quantas amostras são menores ou iguais a 'value'. Exato quando
+         * value + 1 é potência de 2 (limites de faixa coincidem).
+         */
+        public long countAtOrBelow(long value) {
+            long n = 0;
+            for (int i = 0; i < counts.length && upperBound(i) <= value; i++) n += counts[i];
+            return n;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0.0 : (double) sum / count;
+        }
+
+        /** Valor em que 'p' (0..1) das amostras está abaixo ou igual */
+        public long percentile(double p) {
+            if (count == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(p * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                // a última faixa também guarda o que passou da faixa coberta
+                if (seen >= rank) return i == counts.length - 1 ? max : Math.min(upperBound(i), max);
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            if (count == 0) return "n=0";
+            return "p50=" + percentile(0.50) + " p90=" + percentile(0.90) + " p99=" + percentile(0.99)
+                    + " p99.9=" + percentile(0.999) + " max=" + max + " n=" + count;
+        }
+    }
+}
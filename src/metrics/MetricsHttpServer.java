@@ -0,0 +1,89 @@
+package metrics;
+
+import network.Env;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Endpoint HTTP embutido que expõe /metrics em formato OpenMetrics.
+ *
+ * Atende numa única thread daemon própria: um scrape lento nunca ocupa
+ * threads do relay. Porta em METRICS_PORT (padrão 9464; 0 desativa).
+ */
+public class MetricsHttpServer {
+
+    public static final int DEFAULT_PORT = 9464;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    public MetricsHttpServer(int port) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(port), 16);
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "Metrics-HTTP");
+            t.setDaemon(true);
+            return t;
+        });
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(executor);
+    }
+
+    /** Sobe o endpoint conforme METRICS_PORT; retorna null se desativado ou se a porta falhar */
+    public static MetricsHttpServer startFromEnv() {
+        int port = Env.intValue("METRICS_PORT", DEFAULT_PORT);
+        if (port <= 0) return null;
+
+        try {
+            MetricsHttpServer s = new MetricsHttpServer(port);
+            s.start();
+            return s;
+        } catch (IOException e) {
+            System.out.println("[METRICS-HTTP] Não foi possível abrir a porta " + port + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public void start() {
+        server.start();
+        System.out.println("[METRICS-HTTP] /metrics na porta " + server.getAddress().getPort());
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            byte[] body = OpenMetricsRenderer.render(MetricsRegistry.global()).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", OpenMetricsRenderer.CONTENT_TYPE);
+
+            if ("HEAD".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
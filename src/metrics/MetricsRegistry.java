@@ -0,0 +1,164 @@
+package metrics;
+
+import network.ThreadMode;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agregados do processo inteiro, ao lado da visão por conexão do TCPMetrics.
+ *
+ * Só LongAdder: o caminho quente (cada chunk) nunca disputa a mesma linha
+ * de cache entre as threads do relay. Os histogramas do processo não são
+ * gravados no caminho quente: getHistogram() soma os snapshots das conexões
+ * ativas ao acumulado das encerradas (cada close() da conexão incorpora o que
+ * ela registrou desde o anterior). Nem o close() nem a leitura tomam lock:
+ * o acumulado é um LogHistogram atômico e a leitura copia o conjunto de
+ * conexões ativas antes de somar. A cada REPORT_MS, se houve tráfego, uma
+ * linha [GLOBAL] com os percentis vai para o log.
+ */
+public final class MetricsRegistry {
+
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+    private static final long REPORT_MS = 10_000;
+
+    private final LongAdder totalConnections = new LongAdder();
+    private final LongAdder activeConnections = new LongAdder();
+    private final LongAdder activePipes = new LongAdder();
+    private final LongAdder policySwitches = new LongAdder();
+    private final Set<TCPMetrics> live = ConcurrentHashMap.newKeySet();
+    private final LongAdder[] bytes = new LongAdder[Direction.values().length];
+    // amostras das conexões encerradas (somadas no close(), atômicas)
+    private final LogHistogram[] retired = new LogHistogram[RelayHistogram.values().length];
+
+    private final AtomicBoolean reporting = new AtomicBoolean(false);
+
+    private MetricsRegistry() {
+        for (int i = 0; i < bytes.length; i++) bytes[i] = new LongAdder();
+        for (RelayHistogram kind : RelayHistogram.values()) retired[kind.ordinal()] = kind.newHistogram();
+    }
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    void connectionOpened(TCPMetrics metrics) {
+        totalConnections.increment();
+        activeConnections.increment();
+        live.add(metrics);
+        if (reporting.compareAndSet(false, true)) {
+            ThreadMode.PLATFORM.startDaemon("Metrics-Report", this::reportLoop);
+        }
+    }
+
+    void connectionClosed(TCPMetrics metrics) {
+        activeConnections.decrement();
+        retire(metrics);
+    }
+
+    /**
+     * Incorpora ao acumulado o que a conexão registrou desde a última chamada
+     * e a tira da visão ao vivo. Chamado a cada close(): a direção que termina
+     * depois ainda pode registrar amostras após o primeiro. Roda nas threads
+     * do relay, então não bloqueia: o CAS em retiredHistograms garante que
+     * dois close() simultâneos somam partes disjuntas.
+     */
+    void retire(TCPMetrics metrics) {
+        LogHistogram.Snapshot[] before, now;
+        do {
+            before = metrics.retiredHistograms.get();
+            now = new LogHistogram.Snapshot[retired.length];
+            for (RelayHistogram kind : RelayHistogram.values()) now[kind.ordinal()] = metrics.getHistogram(kind);
+        } while (!metrics.retiredHistograms.compareAndSet(before, now));
+
+        for (int i = 0; i < retired.length; i++) {
+            retired[i].add(before == null ? now[i] : now[i].minus(before[i]));
+        }
+        // só depois de somado: uma leitura no meio pode contar a conexão duas vezes, nunca perdê-la
+        live.remove(metrics);
+    }
+
+    void policySwitched() {
+        policySwitches.increment();
+    }
+
+    /** Conexões ativas (visão somente leitura, iterável sem lock) */
+    public Collection<TCPMetrics> getLiveConnections() {
+        return Collections.unmodifiableSet(live);
+    }
+
+    public long getPolicySwitches() { return policySwitches.sum(); }
+
+    void addBytes(Direction dir, int n) {
+        bytes[dir.ordinal()].add(n);
+    }
+
+    /**
+     * Histograma do processo: encerradas + ativas, montado na leitura (relatório
+     * e /metrics). Copia as ativas antes de ler o acumulado, de modo que uma
+     * conexão fechando no meio aparece em um dos dois (ou nos dois, só nesta
+     * leitura), sem lock compartilhado com o relay.
+     */
+    public LogHistogram.Snapshot getHistogram(RelayHistogram kind) {
+        TCPMetrics[] conns = live.toArray(new TCPMetrics[0]);
+        List<LogHistogram> all = new ArrayList<>(conns.length + 1);
+        all.add(retired[kind.ordinal()]);
+        for (TCPMetrics m : conns) all.add(m.histogram(kind));
+        return LogHistogram.sum(all);
+    }
+
+    public void pipeStarted() { activePipes.increment(); }
+    public void pipeFinished() { activePipes.decrement(); }
+
+    public long getTotalConnections() { return totalConnections.sum(); }
+    public long getActiveConnections() { return activeConnections.sum(); }
+    public long getActivePipes() { return activePipes.sum(); }
+    public long getBytes(Direction dir) { return bytes[dir.ordinal()].sum(); }
+
+    public long getTotalBytes() {
+        long total = 0;
+        for (LongAdder b : bytes) total += b.sum();
+        return total;
+    }
+
+    /** Janela de taxa própria do chamador sobre o total de bytes do processo */
+    public RateWindow newRateWindow() {
+        return new RateWindow(this::getTotalBytes);
+    }
+
+    private void reportLoop() {
+        long lastBytes = -1;
+        try {
+            while (true) {
+                Thread.sleep(REPORT_MS);
+                long total = getTotalBytes();
+                if (total == lastBytes) continue;
+                lastBytes = total;
+
+                System.out.println("[GLOBAL] " + this);
+                for (RelayHistogram kind : RelayHistogram.values()) {
+                    LogHistogram.Snapshot s = getHistogram(kind);
+                    if (s.getCount() > 0) System.out.println("[GLOBAL]   " + kind.label() + " " + s);
+                }
+                CapturePipeline capture = CapturePipeline.shared();
+                if (capture.getCaptured() > 0) System.out.println("[GLOBAL]   " + capture);
+                CapturePolicy policy = CapturePolicy.shared();
+                if (policy.getSkipped() > 0 || policy.getTriggers() > 0) System.out.println("[GLOBAL]   " + policy);
+            }
+        } catch (InterruptedException ignored) {}
+    }
+
+    @Override
+    public String toString() {
+        return "conexões=" + getTotalConnections() + " ativas=" + getActiveConnections()
+                + " pipes=" + getActivePipes()
+                + " C→S=" + getBytes(Direction.C2S) + " S→C=" + getBytes(Direction.S2C)
+                + " ECHO=" + getBytes(Direction.ECHO);
+    }
+}
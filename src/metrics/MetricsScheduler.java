@@ -0,0 +1,176 @@
+package metrics;
+
+import network.Env;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Agendador de amostragem compartilhado pelo processo.
+ *
+ * Substitui as threads Metrics-Monitor e CSV-Logger que cada conexão
+ * criava: um pool fixo (METRICS_SAMPLER_THREADS, padrão 2) roda um tick a
+ * cada METRICS_TICK_MS (padrão 100ms), separa as conexões registradas cujo
+ * intervalo venceu e as amostra em lotes de BATCH_SIZE espalhados pelo pool.
+ * O número de threads não cresce com o número de conexões.
+ *
+ * - Jitter: uma entrada vence até meio tick antes do horário; se o tick
+ *   atrasou, a próxima amostra é reagendada a partir de agora, sem rajada
+ *   para compensar as perdidas.
+ * - Sobreposição: enquanto uma amostra da mesma conexão ainda roda, os
+ *   ticks seguintes a pulam.
+ * - Ociosidade: conexões que informam idle() não são amostradas.
+ */
+public final class MetricsScheduler {
+
+    /** Algo amostrado periodicamente (uma conexão) */
+    public interface Sampled {
+        /** true = nada mudou desde a última amostra; o tick a pula */
+        boolean idle(long nowMs);
+
+        /** Nunca roda em paralelo consigo mesmo */
+        void sample(long nowMs);
+    }
+
+    private static final int BATCH_SIZE = 64;
+
+    private static final MetricsScheduler SHARED = new MetricsScheduler(
+            Env.intValue("METRICS_SAMPLER_THREADS", 2), Env.intValue("METRICS_TICK_MS", 100));
+
+    private static final class Entry {
+        final Sampled target;
+        volatile long intervalMs;
+        volatile long nextDue;
+        final AtomicBoolean running = new AtomicBoolean(false);
+
+        Entry(Sampled target, long intervalMs, long now) {
+            this.target = target;
+            this.intervalMs = intervalMs;
+            this.nextDue = now;
+        }
+    }
+
+    private final int threads;
+    private final long tickMs;
+    private final Map<Sampled, Entry> entries = new ConcurrentHashMap<>();
+
+    private volatile ScheduledExecutorService executor;
+
+    private final LongAdder samples = new LongAdder();
+    private final LongAdder idleSkips = new LongAdder();
+    private final LongAdder busySkips = new LongAdder();
+    private volatile long lastTickMicros = 0;
+
+    private MetricsScheduler(int threads, long tickMs) {
+        this.threads = Math.max(1, threads);
+        this.tickMs = Math.max(10, tickMs);
+    }
+
+    public static MetricsScheduler shared() {
+        return SHARED;
+    }
+
+    /**
+     * Passa a amostrar o alvo a cada intervalMs (a primeira amostra sai no
+     * próximo tick). Registrar de novo mantém o menor intervalo pedido.
+     */
+    public void register(Sampled target, long intervalMs) {
+        long interval = Math.max(tickMs, intervalMs);
+        Entry e = entries.computeIfAbsent(target, t -> new Entry(t, interval, System.currentTimeMillis()));
+        if (interval < e.intervalMs) e.intervalMs = interval;
+        startIfNeeded();
+    }
+
+    public void unregister(Sampled target) {
+        entries.remove(target);
+    }
+
+    public int getRegistered() { return entries.size(); }
+    public int getThreads() { return threads; }
+    public long getSamples() { return samples.sum(); }
+    public long getIdleSkips() { return idleSkips.sum(); }
+    public long getBusySkips() { return busySkips.sum(); }
+    public long getLastTickMicros() { return lastTickMicros; }
+
+    private synchronized void startIfNeeded() {
+        if (executor != null) return;
+        executor = Executors.newScheduledThreadPool(threads,
+                Thread.ofPlatform().name("Metrics-Sampler-", 0).daemon(true).factory());
+        executor.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Um tick: coleta as entradas vencidas e as distribui em lotes */
+    private void tick() {
+        long start = System.nanoTime();
+        try {
+            long now = System.currentTimeMillis();
+            long slack = tickMs / 2;
+
+            List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+            List<List<Entry>> batches = new ArrayList<>();
+
+            for (Entry e : entries.values()) {
+                if (now + slack < e.nextDue) continue;
+
+                long next = e.nextDue + e.intervalMs;
+                e.nextDue = next <= now ? now + e.intervalMs : next;
+
+                if (e.target.idle(now)) {
+                    idleSkips.increment();
+                    continue;
+                }
+                if (!e.running.compareAndSet(false, true)) {
+                    busySkips.increment();
+                    continue;
+                }
+
+                batch.add(e);
+                if (batch.size() == BATCH_SIZE) {
+                    batches.add(batch);
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) batches.add(batch);
+
+            // o primeiro lote roda neste tick; os demais vão para o pool
+            for (int i = 1; i < batches.size(); i++) {
+                List<Entry> b = batches.get(i);
+                executor.execute(() -> runBatch(b, now));
+            }
+            if (!batches.isEmpty()) runBatch(batches.get(0), now);
+        } catch (Exception e) {
+            // exceção cancelaria o scheduleAtFixedRate
+            System.err.println("[METRICS] falha no tick do agendador: " + e.getMessage());
+        }
+        lastTickMicros = (System.nanoTime() - start) / 1000;
+    }
+
+    private void runBatch(List<Entry> batch, long now) {
+        for (Entry e : batch) {
+            try {
+                // removida (conexão fechada) depois de entrar no lote
+                if (entries.get(e.target) == e) {
+                    e.target.sample(now);
+                    samples.increment();
+                }
+            } catch (Exception ex) {
+                System.err.println("[METRICS] falha amostrando: " + ex.getMessage());
+            } finally {
+                e.running.set(false);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Sampler{threads=" + threads + ", tick=" + tickMs + "ms, conexões=" + entries.size() +
+                ", amostras=" + getSamples() + ", ociosas=" + getIdleSkips() + ", ocupadas=" + getBusySkips() + "}";
+    }
+}
@@ -0,0 +1,197 @@
+package metrics;
+
+import optimizations.OpPolicyType;
+import optimizations.PacingPolicy;
+import optimizations.PolicyConfig;
+
+import java.util.Locale;
+
+/**
+ * Gera o texto OpenMetrics (formato de scrape do Prometheus) a partir do
+ * MetricsRegistry e das conexões ativas.
+ *
+ * Só lê contadores atômicos e copia histogramas (os do processo são somados
+ * pelo MetricsRegistry sobre uma cópia das conexões ativas, sem lock): nunca
+ * toma locks usados pelas threads do relay, e um scrape não atrasa o close()
+ * das conexões.
+ */
+public final class OpenMetricsRenderer {
+
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final StringBuilder sb = new StringBuilder(16 * 1024);
+
+    private OpenMetricsRenderer() {
+    }
+
+    public static String render(MetricsRegistry registry) {
+        OpenMetricsRenderer r = new OpenMetricsRenderer();
+        r.process(registry);
+        r.connections(registry);
+        r.sb.append("# EOF\n");
+        return r.sb.toString();
+    }
+
+    // -------------------- processo --------------------
+
+    private void process(MetricsRegistry reg) {
+        family("proxy_connections", "counter", "Conexões aceitas desde o início");
+        sample("proxy_connections_total", "", reg.getTotalConnections());
+
+        family("proxy_active_connections", "gauge", "Conexões abertas");
+        sample("proxy_active_connections", "", reg.getActiveConnections());
+
+        family("proxy_active_pipes", "gauge", "Pipes/relays em execução");
+        sample("proxy_active_pipes", "", reg.getActivePipes());
+
+        family("proxy_bytes", "counter", "Bytes encaminhados por direção");
+        for (Direction d : Direction.values()) {
+            sample("proxy_bytes_total", label("direction", dirLabel(d)), reg.getBytes(d));
+        }
+
+        family("proxy_policy_switches", "counter", "Trocas de OpPolicyType em todas as conexões");
+        sample("proxy_policy_switches_total", "", reg.getPolicySwitches());
+
+        for (RelayHistogram kind : RelayHistogram.values()) {
+            String name = "proxy_" + kind.label();
+            family(name, "histogram", null);
+            histogram(name, "", reg.getHistogram(kind));
+        }
+
+        capture(CapturePipeline.shared());
+
+        family("proxy_pacing_deferred_writes", "counter", "Escritas adiadas pelo pacing (balde de tokens)");
+        sample("proxy_pacing_deferred_writes_total", "", PacingPolicy.getTotalDeferred());
+
+        family("proxy_pacing_deferred_us", "counter", "Tempo total de adiamento pedido pelo pacing");
+        sample("proxy_pacing_deferred_us_total", "", PacingPolicy.getTotalDeferredNanos() / 1000);
+
+        family("proxy_policy_config_generation", "gauge", "Geração do arquivo de política em uso (sobe a cada reload aceito)");
+        sample("proxy_policy_config_generation", "", PolicyConfig.shared().generation());
+    }
+
+    private void capture(CapturePipeline c) {
+        family("proxy_capture_packets", "counter", "Pacotes enfileirados para o pcap");
+        sample("proxy_capture_packets_total", "", c.getCaptured());
+
+        family("proxy_capture_written_packets", "counter", "Pacotes gravados em disco");
+        sample("proxy_capture_written_packets_total", "", c.getWritten());
+
+        family("proxy_capture_written_bytes", "counter", "Bytes gravados em disco (com cabeçalhos)");
+        sample("proxy_capture_written_bytes_total", "", c.getWrittenBytes());
+
+        family("proxy_capture_dropped_packets", "counter", "Pacotes descartados com a fila cheia");
+        sample("proxy_capture_dropped_packets_total", "", c.getDropped());
+
+        family("proxy_capture_blocked", "counter", "Esperas do relay por espaço na fila (CAPTURE_OVERFLOW=block)");
+        sample("proxy_capture_blocked_total", "", c.getBlocked());
+
+        family("proxy_capture_queue_depth", "gauge", "Registros na fila de captura");
+        sample("proxy_capture_queue_depth", "", c.getDepth());
+
+        CapturePolicy p = CapturePolicy.shared();
+        family("proxy_capture_skipped_packets", "counter", "Pacotes fora da amostra, da janela ou sem gatilho");
+        sample("proxy_capture_skipped_packets_total", "", p.getSkipped());
+
+        family("proxy_capture_truncated_packets", "counter", "Pacotes cortados no CAPTURE_SNAPLEN");
+        sample("proxy_capture_truncated_packets_total", "", p.getTruncated());
+
+        family("proxy_capture_triggers", "counter", "Capturas disparadas por SAFE ou RTTVAR");
+        sample("proxy_capture_triggers_total", "", p.getTriggers());
+    }
+
+    // -------------------- por conexão --------------------
+
+    private void connections(MetricsRegistry reg) {
+        Iterable<TCPMetrics> live = reg.getLiveConnections();
+
+        family("proxy_connection_bytes", "counter", "Bytes por conexão e direção");
+        for (TCPMetrics m : live) {
+            for (Direction d : Direction.values()) {
+                sample("proxy_connection_bytes_total",
+                        conn(m) + "," + label("direction", dirLabel(d)), m.getBytes(d));
+            }
+        }
+
+        family("proxy_connection_rtt_us", "gauge", "Último RTT passivo (µs)");
+        for (TCPMetrics m : live) sample("proxy_connection_rtt_us", conn(m), m.getLastRtt());
+
+        family("proxy_connection_rttvar_us", "gauge", null);
+        for (TCPMetrics m : live) sample("proxy_connection_rttvar_us", conn(m), (long) m.getRttVar());
+
+        family("proxy_connection_cwnd", "gauge", "Janela de congestionamento (segmentos)");
+        for (TCPMetrics m : live) sample("proxy_connection_cwnd", conn(m), m.getCongestionWindow());
+
+        family("proxy_connection_ssthresh", "gauge", null);
+        for (TCPMetrics m : live) sample("proxy_connection_ssthresh", conn(m), m.getSsthresh());
+
+        family("proxy_connection_buffer_size_bytes", "gauge", "Tamanho de leitura definido pela política");
+        for (TCPMetrics m : live) sample("proxy_connection_buffer_size_bytes", conn(m), m.getBufferSize());
+
+        family("proxy_connection_policy", "stateset", "OpPolicyType atual");
+        for (TCPMetrics m : live) {
+            String current = m.getPolicyType();
+            for (String p : POLICY_TYPES) {
+                sample("proxy_connection_policy", conn(m) + "," + label("proxy_connection_policy", p),
+                        p.equals(current) ? 1 : 0);
+            }
+        }
+
+        family("proxy_connection_policy_switches", "counter", null);
+        for (TCPMetrics m : live) sample("proxy_connection_policy_switches_total", conn(m), m.getPolicySwitches());
+
+        for (RelayHistogram kind : RelayHistogram.values()) {
+            String name = "proxy_connection_" + kind.label();
+            family(name, "histogram", null);
+            for (TCPMetrics m : live) histogram(name, conn(m), m.getHistogram(kind));
+        }
+    }
+
+    private static final String[] POLICY_TYPES = policyTypes();
+
+    private static String[] policyTypes() {
+        OpPolicyType[] types = OpPolicyType.values();
+        String[] names = new String[types.length];
+        for (int i = 0; i < types.length; i++) names[i] = types[i].name();
+        return names;
+    }
+
+    // -------------------- formatação --------------------
+
+    private void family(String name, String type, String help) {
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+        if (help != null) sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+    }
+
+    private void sample(String name, String labels, long value) {
+        sb.append(name);
+        if (!labels.isEmpty()) sb.append('{').append(labels).append('}');
+        sb.append(' ').append(value).append('\n');
+    }
+
+    /** Faixas cumulativas em potências de 2 (le = 2^k - 1) até cobrir o máximo ou a faixa, mais +Inf */
+    private void histogram(String name, String labels, LogHistogram.Snapshot s) {
+        String prefix = labels.isEmpty() ? "" : labels + ",";
+        long le = 0;
+        while (true) {
+            sample(name + "_bucket", prefix + label("le", Long.toString(le)), s.countAtOrBelow(le));
+            if (le >= s.getMax() || le >= s.getRangeLimit()) break;
+            le = le * 2 + 1;
+        }
+        sample(name + "_bucket", prefix + label("le", "+Inf"), s.getCount());
+        sample(name + "_count", labels, s.getCount());
+        sample(name + "_sum", labels, s.getSum());
+    }
+
+    private static String conn(TCPMetrics m) {
+        return label("conn", Long.toString(m.getId()));
+    }
+
+    private static String dirLabel(Direction d) {
+        return d.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static String label(String key, String value) {
+        return key + "=\"" + value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+}
@@ -0,0 +1,66 @@
+package metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * Estima o RTT sem tocar no payload.
+ *
+ * Quando bytes são encaminhados em um sentido (onForward) e nada está
+ * pendente, o instante fica marcado; os primeiros bytes que voltam no
+ * sentido oposto (onResponse) fecham a amostra. Cada "vez" de uma conversa
+ * requisição/resposta gera uma amostra; em tráfego full-duplex contínuo a
+ * amostra é uma aproximação (a resposta pode não ser daquele envio).
+ *
+ * No proxy o envio é marcado quando os bytes saem para o servidor e a
+ * resposta quando é lida dele, antes do pacing: o atraso que o próprio
+ * proxy impõe não entra no RTT que alimenta a escolha de política.
+ *
+ * As duas pontas podem ser chamadas de threads diferentes.
+ */
+public class PassiveRttEstimator {
+
+    private final AtomicLong pendingSince = new AtomicLong(0);
+    private final LongConsumer sink;
+
+    private final AtomicLong samples = new AtomicLong();
+    private volatile long lastSampleUs = -1;
+    private volatile long minSampleUs = Long.MAX_VALUE;
+
+    /** 'sink' recebe cada amostra em µs */
+    public PassiveRttEstimator(LongConsumer sink) {
+        this.sink = sink;
+    }
+
+    /** Bytes saíram em direção ao par (C→S no proxy) */
+    public void onForward() {
+        onForward(System.nanoTime());
+    }
+
+    /** Igual a onForward(), com o System.nanoTime() de quando os bytes saíram */
+    public void onForward(long atNanos) {
+        // leitura simples antes do CAS: em rajadas C→S quase sempre já há envio pendente
+        if (pendingSince.get() == 0) pendingSince.compareAndSet(0, atNanos);
+    }
+
+    /** Bytes chegaram do par no sentido oposto (S→C no proxy) */
+    public void onResponse() {
+        onResponse(System.nanoTime());
+    }
+
+    /** Igual a onResponse(), com o System.nanoTime() de quando os bytes foram lidos */
+    public void onResponse(long atNanos) {
+        long start = pendingSince.getAndSet(0);
+        if (start == 0) return;
+
+        long us = Math.max(1, (atNanos - start) / 1000);
+        samples.incrementAndGet();
+        lastSampleUs = us;
+        if (us < minSampleUs) minSampleUs = us;
+        sink.accept(us);
+    }
+
+    public long getSamples() { return samples.get(); }
+    public long getLastSampleUs() { return lastSampleUs; }
+    public long getMinSampleUs() { return minSampleUs == Long.MAX_VALUE ? -1 : minSampleUs; }
+}
@@ -0,0 +1,278 @@
+package metrics;
+
+import network.Env;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Segmentos pcap do processo, gravados via MappedByteBuffer.
+ *
+ * Em vez de um arquivo por pipe, todas as conexões são intercaladas no
+ * segmento ativo (pcap/capture_<epoch>_<pid>_<seq>.pcap), identificadas pelo
+ * cabeçalho IP + TCP que o CaptureFlow sintetiza (LINKTYPE_RAW). Só o
+ * segmento ativo fica aberto: um descritor de arquivo, qualquer que seja o
+ * número de conexões.
+ *
+ * - CAPTURE_SEGMENT_MB (padrão 64): tamanho mapeado; o segmento fecha
+ *   quando o próximo pacote não cabe
+ * - CAPTURE_SEGMENT_SECONDS (padrão 300): idade máxima de um segmento
+ * - CAPTURE_RETENTION_MB (padrão 1024): total de capture_*.pcap no
+ *   diretório; ao fechar um segmento os mais antigos são apagados
+ * - CAPTURE_DIR (padrão pcap)
+ *
+ * O segmento ativo tem o tamanho mapeado (final zerado) até ser fechado;
+ * ao fechar (rotação ou fim do processo) ele é truncado no último pacote.
+ * Se abrir um segmento falha (disco cheio, sem permissão), os pacotes são
+ * descartados e a abertura só é tentada de novo depois de RETRY_MS.
+ *
+ * Usado apenas pela thread de escrita do CapturePipeline.
+ */
+final class PcapSegmentStore {
+
+    private static final String PREFIX = "capture_";
+
+    // cabeçalho IPv4/IPv6 + TCP (sem opções)
+    private static final int TCP_HEADER = 20;
+    private static final int IPV4_HEADER = 20;
+    private static final int IPV6_HEADER = 40;
+    /** Payload máximo por pacote sintetizado (total length do IPv4 é 16 bits) */
+    static final int MAX_PAYLOAD = 65535 - IPV4_HEADER - TCP_HEADER;
+    static final int SNAPLEN = 65535;
+
+    private static final long RETRY_MS = 1000;
+
+    private static final int LINKTYPE_RAW = 101;
+    private static final byte TCP_PSH_ACK = 0x18;
+
+    private final File dir;
+    private final long segmentBytes;
+    private final long maxAgeMs;
+    private final long retentionBytes;
+    private final int snaplen;
+    private final long pid = ProcessHandle.current().pid();
+
+    private FileChannel channel;
+    private MappedByteBuffer map;
+    private File current;
+    private long openedAt;
+    private int seq = 0;
+
+    private long segments = 0;
+    private long deleted = 0;
+    private long bytes = 0;
+    private boolean failing = false;
+    private long retryAt = 0;
+
+    PcapSegmentStore(File dir, long segmentBytes, long maxAgeMs, long retentionBytes, int payloadSnaplen) {
+        this.dir = dir;
+        // um pacote máximo sempre cabe num segmento vazio
+        this.segmentBytes = Math.max(1024 * 1024, segmentBytes);
+        this.maxAgeMs = Math.max(1000, maxAgeMs);
+        this.retentionBytes = retentionBytes;
+        // o snaplen do arquivo inclui os cabeçalhos sintetizados
+        this.snaplen = Math.min(SNAPLEN, payloadSnaplen + IPV6_HEADER + TCP_HEADER);
+    }
+
+    static PcapSegmentStore fromEnv() {
+        String d = System.getenv("CAPTURE_DIR");
+        return new PcapSegmentStore(new File(d == null || d.isBlank() ? "pcap" : d.trim()),
+                Env.intValue("CAPTURE_SEGMENT_MB", 64) * 1024L * 1024,
+                Env.intValue("CAPTURE_SEGMENT_SECONDS", 300) * 1000L,
+                Env.intValue("CAPTURE_RETENTION_MB", 1024) * 1024L * 1024,
+                CapturePolicy.shared().getSnaplen());
+    }
+
+    /**
+     * Grava o payload como um ou mais pacotes TCP do fluxo (acima de
+     * MAX_PAYLOAD é dividido). 'payload' pode ter menos que 'origLen' bytes
+     * (snaplen): os pacotes ficam com incl_len < orig_len e, se sobrarem
+     * pacotes sem bytes capturados, só com cabeçalho. Retorna os bytes
+     * gravados, 0 se não há segmento disponível.
+     */
+    long append(CaptureFlow flow, Direction dir, CapturePipeline.Record r) {
+        long timestampMs = r.timestampMs;
+        long written = 0;
+        ByteBuffer data = r.data.duplicate();
+        int remaining = Math.max(r.origLen, data.remaining());
+        int seqNo = r.seq;
+        do {
+            int len = Math.min(remaining, MAX_PAYLOAD);
+            int captured = Math.min(data.remaining(), len);
+            int headers = (flow.isIpv6() ? IPV6_HEADER : IPV4_HEADER) + TCP_HEADER;
+            int record = 16 + headers + captured;
+
+            if (!ensure(record, timestampMs)) return written;
+
+            // per-packet header (little-endian)
+            map.putInt((int) (timestampMs / 1000));
+            map.putInt((int) ((timestampMs % 1000) * 1000));
+            map.putInt(headers + captured);
+            map.putInt(headers + len);
+
+            map.order(ByteOrder.BIG_ENDIAN); // cabeçalhos de rede
+            if (flow.isIpv6()) ipv6(flow, dir, TCP_HEADER + len);
+            else ipv4(flow, dir, IPV4_HEADER + TCP_HEADER + len);
+            tcp(flow, dir, seqNo, r.ack);
+            seqNo += len;
+            map.order(ByteOrder.LITTLE_ENDIAN);
+
+            ByteBuffer chunk = data.duplicate();
+            chunk.limit(chunk.position() + captured);
+            map.put(chunk);
+            data.position(data.position() + captured);
+
+            remaining -= len;
+            written += record;
+        } while (remaining > 0);
+
+        bytes += written;
+        return written;
+    }
+
+    /** Chamado pela thread de escrita quando ociosa: fecha segmentos velhos sem tráfego */
+    void tick(long now) {
+        if (map != null && map.position() > 24 && now - openedAt >= maxAgeMs) closeSegment();
+    }
+
+    void close() {
+        closeSegment();
+    }
+
+    long getSegments() { return segments; }
+    long getDeleted() { return deleted; }
+    long getBytes() { return bytes; }
+    String getCurrent() { return current == null ? "-" : current.getPath(); }
+
+    // -------------------- segmentos --------------------
+
+    private boolean ensure(int record, long now) {
+        if (map != null && (map.remaining() < record || now - openedAt >= maxAgeMs)) closeSegment();
+        if (map == null && (!failing || now >= retryAt)) openSegment(now);
+        return map != null;
+    }
+
+    private void openSegment(long now) {
+        if (!dir.exists()) dir.mkdirs();
+        File f = new File(dir, PREFIX + now + "_" + pid + "_" + seq + ".pcap");
+        try {
+            FileChannel ch = FileChannel.open(f.toPath(),
+                    StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+            m.order(ByteOrder.LITTLE_ENDIAN);
+            globalHeader(m, snaplen);
+
+            channel = ch;
+            map = m;
+            current = f;
+            openedAt = now;
+            seq++;
+            segments++;
+            failing = false;
+        } catch (IOException e) {
+            if (!failing) System.err.println("[PCAP] erro abrindo segmento " + f + ": " + e.getMessage());
+            failing = true;
+            retryAt = now + RETRY_MS;
+            f.delete(); // arquivo criado antes de o mapeamento falhar; o mesmo nome serve na próxima tentativa
+        }
+    }
+
+    /** Trunca no último pacote, fecha e aplica a retenção */
+    private void closeSegment() {
+        if (map == null) return;
+        long used = map.position();
+        try {
+            channel.truncate(used);
+            channel.close();
+        } catch (IOException e) {
+            System.err.println("[PCAP] erro fechando segmento " + current + ": " + e.getMessage());
+        }
+        // o mapeamento é liberado pelo GC; nada mais o acessa depois daqui
+        map = null;
+        channel = null;
+        System.out.println("[PCAP] segmento fechado: " + current + " (" + used / 1024 + "KB)");
+        current = null;
+        enforceRetention();
+    }
+
+    private void enforceRetention() {
+        File[] files = dir.listFiles((d, name) -> name.startsWith(PREFIX) && name.endsWith(".pcap"));
+        if (files == null) return;
+
+        long total = 0;
+        for (File f : files) total += f.length();
+        if (total <= retentionBytes) return;
+
+        Arrays.sort(files, Comparator.comparingLong(File::lastModified).thenComparing(File::getName));
+        for (File f : files) {
+            if (total <= retentionBytes) break;
+            long len = f.length();
+            if (f.delete()) {
+                total -= len;
+                deleted++;
+            }
+        }
+    }
+
+    // -------------------- cabeçalhos --------------------
+
+    private static void globalHeader(ByteBuffer b, int snaplen) {
+        b.putInt(0xa1b2c3d4); // magic (little-endian no arquivo: d4 c3 b2 a1)
+        b.putShort((short) 2);
+        b.putShort((short) 4);
+        b.putInt(0);          // thiszone
+        b.putInt(0);          // sigfigs
+        b.putInt(snaplen);
+        b.putInt(LINKTYPE_RAW);
+    }
+
+    private void ipv4(CaptureFlow flow, Direction dir, int totalLength) {
+        int start = map.position();
+        map.put((byte) 0x45);                     // versão 4, IHL 5
+        map.put((byte) 0);
+        map.putShort((short) totalLength);
+        map.putShort((short) 0);                  // identification
+        map.putShort((short) 0x4000);             // DF
+        map.put((byte) 64);                       // TTL
+        map.put((byte) 6);                        // TCP
+        map.putShort((short) 0);                  // checksum (abaixo)
+        map.put(flow.addressBytes(flow.source(dir)));
+        map.put(flow.addressBytes(flow.destination(dir)));
+
+        int sum = 0;
+        for (int i = 0; i < IPV4_HEADER; i += 2) sum += map.getShort(start + i) & 0xFFFF;
+        while ((sum >>> 16) != 0) sum = (sum & 0xFFFF) + (sum >>> 16);
+        map.putShort(start + 10, (short) ~sum);
+    }
+
+    private void ipv6(CaptureFlow flow, Direction dir, int payloadLength) {
+        map.putInt(0x60000000);                   // versão 6
+        map.putShort((short) payloadLength);
+        map.put((byte) 6);                        // next header = TCP
+        map.put((byte) 64);                       // hop limit
+        map.put(flow.addressBytes(flow.source(dir)));
+        map.put(flow.addressBytes(flow.destination(dir)));
+    }
+
+    private void tcp(CaptureFlow flow, Direction dir, int seqNo, int ack) {
+        InetSocketAddress src = flow.source(dir);
+        InetSocketAddress dst = flow.destination(dir);
+        map.putShort((short) src.getPort());
+        map.putShort((short) dst.getPort());
+        map.putInt(seqNo);
+        map.putInt(ack);
+        map.put((byte) (5 << 4));                 // data offset
+        map.put(TCP_PSH_ACK);
+        map.putShort((short) 0xFFFF);             // janela
+        map.putShort((short) 0);                  // checksum (não calculado)
+        map.putShort((short) 0);                  // urgent
+    }
+}
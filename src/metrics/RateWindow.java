@@ -0,0 +1,37 @@
+package metrics;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Taxa por janela sobre um contador monotônico.
+ *
+ * Cada leitor (CSV, monitor, AlgorithmSelector) cria a sua: o estado da
+ * janela anterior é só dele, então um leitor não encurta a janela do outro.
+ * rate() é sincronizado só para o caso de um mesmo leitor rodar em threads
+ * diferentes ao longo do tempo (ex.: threads do MetricsScheduler).
+ */
+public class RateWindow {
+
+    private final LongSupplier counter;
+    private long lastValue;
+    private long lastNanos;
+
+    public RateWindow(LongSupplier counter) {
+        this.counter = counter;
+        this.lastValue = counter.getAsLong();
+        this.lastNanos = System.nanoTime();
+    }
+
+    /** Unidades por segundo desde a chamada anterior (ou desde a criação) */
+    public synchronized long rate() {
+        long value = counter.getAsLong();
+        long now = System.nanoTime();
+        long elapsed = now - lastNanos;
+        if (elapsed <= 0) return 0;
+
+        long rate = (long) ((value - lastValue) * 1_000_000_000.0 / elapsed);
+        lastValue = value;
+        lastNanos = now;
+        return rate;
+    }
+}
@@ -0,0 +1,35 @@
+package metrics;
+
+/**
+ * Distribuições acompanhadas por conexão e no agregado do processo.
+ *
+ * Cada tipo tem a faixa que faz sentido para ele: 2^24µs (~17s) para
+ * tempos, 2^18 para leituras (BufferPool.MAX_SIZE é 256KB) e 2^20 para
+ * flushes (limiar de coalescência + um chunk). O que passar cai na última
+ * faixa, com o máximo exato. São cinco histogramas por conexão (~13KB no
+ * total), então a faixa é memória.
+ */
+public enum RelayHistogram {
+
+    RTT_US("rtt_us", 24),               // amostras do PassiveRttEstimator
+    FORWARD_US("forward_us", 24),       // do chunk lido até ser entregue à escrita (latência do proxy)
+    CHUNK_BYTES("chunk_bytes", 18),     // tamanho de cada leitura
+    WRITE_BLOCK_US("write_block_us", 24), // tempo bloqueado escrevendo no socket
+    FLUSH_BYTES("flush_bytes", 20);     // bytes por flush do WriteCoalescer
+
+    private final String label;
+    private final int maxExp;
+
+    RelayHistogram(String label, int maxExp) {
+        this.label = label;
+        this.maxExp = maxExp;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public LogHistogram newHistogram() {
+        return new LogHistogram(maxExp);
+    }
+}
@@ -2,116 +2,265 @@ package metrics;
 
 import java.io.File;
 import java.io.FileWriter;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
-import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
-import optimizations.AlgorithmSelector;
+import buffer.BufferPool;
 
-public class TCPMetrics {
+import optimizations.OpPolicyType;
+import sockets.NativeTcp;
 
-    private final Socket client;
-    private final Socket server;
+public final class TCPMetrics implements MetricsScheduler.Sampled {
 
-    private long totalClientBytes = 0;
-    private long totalServerBytes = 0;
+    private static final AtomicLong IDS = new AtomicLong();
 
-    private long lastRtt = -1;
-    private double rttVar = 0;
+    private final long id = IDS.incrementAndGet();
+    private final Socket client;
+    private final Socket server;
 
-    private final Object lock = new Object();
+    // escritos pelas duas direções do relay em paralelo: LongAdder por direção, sem lock
+    private final LongAdder[] bytes = newCounters();
+    private final LogHistogram[] histograms = newHistograms();
+    // parte dos histogramas já somada ao acumulado do registry (só ele mexe, por CAS)
+    final AtomicReference<LogHistogram.Snapshot[]> retiredHistograms = new AtomicReference<>();
+    private final MetricsRegistry registry = MetricsRegistry.global();
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+
+    private volatile long lastRtt = -1;
+    private volatile double rttVar = 0;
+    private volatile long kernelRtt = -1;
+    private final Lock rttLock = new ReentrantLock();
+    private final PassiveRttEstimator rttEstimator = new PassiveRttEstimator(this::updateRttVar);
+
+    // protege o CSV; ReentrantLock para não prender carrier threads durante o I/O
+    private final Lock lock = new ReentrantLock();
     private volatile boolean connectionAlive = true;
 
     private volatile boolean logging = false;
-    private Thread loggingThread = null;
     private PrintWriter csvOut = null;
+    private BinaryMetricsLog binaryLog = null;
+    private RateWindow logRate = null;
+
+    // METRICS_LOG_FORMAT=csv mantém um CSV por conexão; padrão é o log binário compartilhado
+    private static final boolean CSV_LOG = "csv".equalsIgnoreCase(System.getenv("METRICS_LOG_FORMAT"));
 
-    private long lastBytes = 0;
-    private long lastTs = -1;
+    // amostragem pelo MetricsScheduler compartilhado (monitor e log na mesma passada)
+    private static final long MONITOR_INTERVAL_MS = 500;
+    // conexão ociosa ainda é amostrada de vez em quando, para o log não ficar sem linhas
+    private static final long IDLE_HEARTBEAT_MS = 10_000;
+    private volatile boolean monitoring = false;
+    // só a thread do agendador que está amostrando mexe nestes
+    private long lastSampledBytes = -1;
+    private long lastSampleAt = 0;
+    private long lastC2S = 0, lastS2C = 0;
+    private int ticks = 0;
+
+    private final long startedAt = System.currentTimeMillis();
+
+    // identificação da conexão nos segmentos pcap, criada no primeiro uso
+    private volatile CaptureFlow captureFlow;
 
     private String congestionAlgorithm = "unknown";
 
+    // política escolhida pelo AlgorithmSelector e quantas trocas houve
+    private volatile String policyType = "BALANCED";
+    private final AtomicLong policySwitches = new AtomicLong();
+
     private volatile int bufferSize = -1;
 
+    // opções efetivamente aplicadas ao socket do servidor (SocketTuner)
+    private volatile int appliedSndBuf = -1;
+    private volatile int appliedRcvBuf = -1;
+    private volatile boolean appliedNoDelay = false;
+
     private volatile int congestionWindow = -1;
     private volatile int ssthresh = 300;   // TCP Tahoe threshold
     private final int initCwnd = 10;       // CWND inicial
 
+    // publicado pelo KernelTcpSampler compartilhado (socket do cliente)
+    private final String kernelKey;
+    private volatile KernelTcpStats kernelStats = null;
+
     public TCPMetrics(Socket client, Socket server) {
         this.client = client;
         this.server = server;
         detectOrMockCongestionAlgorithm();
         this.congestionWindow = initCwnd;
+        this.kernelKey = KernelTcpSampler.shared().track(client, this);
+        registry.connectionOpened(this);
+    }
+
+    private static LogHistogram[] newHistograms() {
+        LogHistogram[] h = new LogHistogram[RelayHistogram.values().length];
+        for (RelayHistogram kind : RelayHistogram.values()) h[kind.ordinal()] = kind.newHistogram();
+        return h;
+    }
+
+    private static LongAdder[] newCounters() {
+        LongAdder[] counters = new LongAdder[Direction.values().length];
+        for (int i = 0; i < counters.length; i++) counters[i] = new LongAdder();
+        return counters;
     }
 
     public void setBufferSize(int size) { this.bufferSize = size; }
     public int getBufferSize() { return bufferSize; }
 
-    public long getTotalClientBytes() { synchronized (lock) { return totalClientBytes; } }
-    public long getTotalServerBytes() { synchronized (lock) { return totalServerBytes; } }
+    public void setAppliedSocketOptions(int sndBuf, int rcvBuf, boolean noDelay) {
+        this.appliedSndBuf = sndBuf;
+        this.appliedRcvBuf = rcvBuf;
+        this.appliedNoDelay = noDelay;
+    }
+    public int getAppliedSndBuf() { return appliedSndBuf; }
+    public int getAppliedRcvBuf() { return appliedRcvBuf; }
+    public boolean isAppliedNoDelay() { return appliedNoDelay; }
+
+    public long getBytes(Direction dir) { return bytes[dir.ordinal()].sum(); }
+    public long getTotalClientBytes() { return getBytes(Direction.C2S); }
+    /** S→C mais o eco final ao cliente */
+    public long getTotalServerBytes() { return getBytes(Direction.S2C) + getBytes(Direction.ECHO); }
+    public long getTotalBytes() { return getTotalClientBytes() + getTotalServerBytes(); }
+    /** false depois do close() */
+    public boolean isAlive() { return connectionAlive; }
     public long getLastRtt() { return lastRtt; }
     public double getRttVar() { return rttVar; }
+    public long getId() { return id; }
+
+    /** Fluxo compartilhado pelas capturas de todas as direções desta conexão */
+    public CaptureFlow getCaptureFlow() {
+        CaptureFlow f = captureFlow;
+        if (f != null) return f;
+        synchronized (this) {
+            if (captureFlow == null) captureFlow = CaptureFlow.of(client, server);
+            return captureFlow;
+        }
+    }
     public int getCongestionWindow() { return congestionWindow; }
+    public int getSsthresh() { return ssthresh; }
+    public String getPolicyType() { return policyType; }
+    public long getPolicySwitches() { return policySwitches.get(); }
+
+    /** Chamado pelo PolicyController quando a política muda */
+    public void onPolicySwitch(String type) {
+        policyType = type;
+        policySwitches.incrementAndGet();
+        registry.policySwitched();
+        if (OpPolicyType.SAFE.name().equals(type)) CapturePolicy.shared().trigger(getCaptureFlow(), "SAFE");
+    }
     public String getCongestionAlgorithm() { return congestionAlgorithm; }
     public void setCongestionAlgorithm(String algo) { this.congestionAlgorithm = algo; }
 
-    public void recordBytes(String dir, int n) {
-        synchronized (lock) {
-            if ("C→S".equals(dir)) totalClientBytes += n;
-            else totalServerBytes += n;
-        }
+    // -------------------- Buffer pool (global) --------------------
+
+    public long getPoolHits() { return BufferPool.HEAP.getHits() + BufferPool.DIRECT.getHits(); }
+    public long getPoolMisses() { return BufferPool.HEAP.getMisses() + BufferPool.DIRECT.getMisses(); }
+    /** Memória retida pelos pools (emprestada + livre), em bytes */
+    public long getPoolFootprint() { return BufferPool.HEAP.getAllocatedBytes() + BufferPool.DIRECT.getAllocatedBytes(); }
+    public long getPoolInUse() { return BufferPool.HEAP.getInUseBytes() + BufferPool.DIRECT.getInUseBytes(); }
+
+    public void recordBytes(Direction dir, int n) {
+        bytes[dir.ordinal()].add(n);
+        registry.addBytes(dir, n);
+        record(RelayHistogram.CHUNK_BYTES, n);
     }
 
-    private long computeThroughput(long nowBytes, long nowTs) {
-        if (lastTs < 0) {
-            lastTs = nowTs;
-            lastBytes = nowBytes;
-            return 0;
-        }
-        long diffBytes = nowBytes - lastBytes;
-        long diffMs = nowTs - lastTs;
-        if (diffMs <= 0) return 0;
-        long thr = (diffBytes * 1000) / diffMs;
-        lastTs = nowTs;
-        lastBytes = nowBytes;
-        return thr;
-    }
-
-    public long getThroughputBps() {
-        long now = System.currentTimeMillis();
-        long totalBytes;
-        synchronized (lock) {
-            totalBytes = totalClientBytes + totalServerBytes;
-        }
-        return computeThroughput(totalBytes, now);
+    /** Chunk lido da origem; 'readAt' é o System.nanoTime() da leitura (antes do pacing) */
+    public void onRead(Direction dir, long readAt) {
+        if (dir == Direction.S2C) rttEstimator.onResponse(readAt);
     }
 
-    public long getRTT() {
-        try {
-            if (server == null || !server.isConnected() || server.isClosed()) return -1;
-            OutputStream out = server.getOutputStream();
-            InputStream in = server.getInputStream();
-            byte[] ping = {42};
-            byte[] pong = new byte[1];
-            long start = System.nanoTime();
-            out.write(ping);
-            out.flush();
-            int read = in.read(pong);
-            long end = System.nanoTime();
-            if (read == 1) return (end - start) / 1000;
-        } catch (Exception ignored) {}
-        return -1;
+    /** Bytes entregues ao socket de destino (depois do pacing e da coalescência) */
+    public void onWritten(Direction dir, long writtenAt) {
+        if (dir == Direction.C2S) rttEstimator.onForward(writtenAt);
+    }
+
+    /** Registra uma amostra no histograma da conexão (o global é a soma delas, montada na leitura) */
+    public void record(RelayHistogram kind, long value) {
+        histograms[kind.ordinal()].record(value);
+    }
+
+    /** Latência do proxy para um chunk: 'sinceNanos' é o System.nanoTime() de quando ele foi lido */
+    public void recordForward(long sinceNanos) {
+        record(RelayHistogram.FORWARD_US, (System.nanoTime() - sinceNanos) / 1000);
+    }
+
+    /** Observador de flush do WriteCoalescer */
+    public void recordFlush(int bytes, long waitNanos, long writeNanos) {
+        record(RelayHistogram.FLUSH_BYTES, bytes);
+        record(RelayHistogram.WRITE_BLOCK_US, writeNanos / 1000);
+    }
+
+    public LogHistogram.Snapshot getHistogram(RelayHistogram kind) {
+        return histograms[kind.ordinal()].snapshot();
+    }
+
+    /** O próprio histograma, para o registry somar sem copiar (só leitura) */
+    LogHistogram histogram(RelayHistogram kind) {
+        return histograms[kind.ordinal()];
+    }
+
+    /** Janela de taxa (B/s) própria do chamador sobre o total de bytes da conexão */
+    public RateWindow newRateWindow() {
+        return new RateWindow(this::getTotalBytes);
+    }
+
+    public PassiveRttEstimator getRttEstimator() { return rttEstimator; }
+
+    /** Chamado pelo KernelTcpSampler a cada passada */
+    void onKernelStats(KernelTcpStats stats) {
+        kernelStats = stats;
+        if (stats.rttUs >= 0) kernelRtt = stats.rttUs;
+    }
+
+    /** Última amostra do kernel, ou null se indisponível */
+    public KernelTcpStats getKernelStats() { return kernelStats; }
+
+    public int getRetransmits() {
+        KernelTcpStats s = kernelStats;
+        return s == null ? -1 : s.retransmits;
+    }
+
+    public long getUnackedBytes() {
+        KernelTcpStats s = kernelStats;
+        return s == null ? -1 : s.unackedBytes;
+    }
+
+    /** RTT medido pelo kernel no socket do cliente (µs), -1 se indisponível */
+    public long getKernelRtt() { return kernelRtt; }
+
+    /** RTT atual: amostra passiva, senão o do kernel, senão 1ms */
+    private long currentRtt() {
+        if (lastRtt >= 0) return lastRtt;
+        if (kernelRtt >= 0) return kernelRtt;
+        return 1000;
+    }
+
+    /** Throughput médio desde a abertura da conexão; não altera o estado do cálculo por intervalo */
+    public long getAverageThroughputBps() {
+        long elapsed = System.currentTimeMillis() - startedAt;
+        if (elapsed <= 0) return 0;
+        return getTotalBytes() * 1000 / elapsed;
     }
 
     private void updateRttVar(long newRtt) {
         if (newRtt < 0) return;
-        if (lastRtt != -1) {
-            double diff = Math.abs(newRtt - lastRtt);
-            rttVar = 0.75 * rttVar + 0.25 * diff;
-        } else rttVar = 0;
-        lastRtt = newRtt;
+        rttLock.lock();
+        try {
+            if (lastRtt != -1) {
+                double diff = Math.abs(newRtt - lastRtt);
+                rttVar = 0.75 * rttVar + 0.25 * diff;
+            } else rttVar = 0;
+            lastRtt = newRtt;
+        } finally {
+            rttLock.unlock();
+        }
+        record(RelayHistogram.RTT_US, newRtt);
+        CapturePolicy.shared().onRttVar(getCaptureFlow(), rttVar);
     }
 
     public void startBackgroundLogging(String prefix, int intervalMs) {
@@ -119,111 +268,149 @@ public class TCPMetrics {
         logging = true;
 
         try {
-            File logsDir = new File("logs");
-            if (!logsDir.exists()) logsDir.mkdirs();
-            long epoch = System.currentTimeMillis();
-            String clean = prefix.replace("logs/", "").replace(".csv", "");
-            String csvPath = "logs/" + clean + "_" + epoch + ".csv";
-            csvOut = new PrintWriter(new FileWriter(csvPath, false));
-            csvOut.println("epoch_ms,c2s_bytes,s2c_bytes,rtt_us,rttvar_us,throughput_Bps,status,algorithm,buffer_size,cwnd,ssthresh");
-            csvOut.flush();
+            if (CSV_LOG) {
+                File logsDir = new File("logs");
+                if (!logsDir.exists()) logsDir.mkdirs();
+                long epoch = System.currentTimeMillis();
+                String clean = prefix.replace("logs/", "").replace(".csv", "");
+                String csvPath = "logs/" + clean + "_" + epoch + ".csv";
+                csvOut = new PrintWriter(new FileWriter(csvPath, false));
+                csvOut.println(String.join(",", BinaryMetricsLog.COLUMNS));
+                csvOut.flush();
+            } else {
+                binaryLog = BinaryMetricsLog.shared();
+            }
         } catch (Exception e) {
-            System.err.println("[METRICS] erro criando CSV: " + e.getMessage());
+            System.err.println("[METRICS] erro criando log: " + e.getMessage());
+            logging = false;
             return;
         }
 
-        loggingThread = new Thread(() -> {
-            try {
-                while (logging && connectionAlive) {
-                    long now = System.currentTimeMillis();
-                    long c2s, s2c;
-                    synchronized (lock) {
-                        c2s = totalClientBytes;
-                        s2c = totalServerBytes;
-                    }
-
-                    long rtt = getRTT();
-                    if (rtt >= 0) updateRttVar(rtt);
-                    else rtt = (lastRtt >= 0) ? lastRtt : 1000; // fallback RTT 1ms
-
-                    updateCongestionWindow();
-
-                    long thr = computeThroughput(c2s + s2c, now);
-                    String status = rtt >= 0 ? "OK" : "FAIL";
-
-                    synchronized (lock) {
-                        csvOut.printf(
-                            "%d,%d,%d,%d,%d,%d,%s,%s,%d,%d,%d%n",
-                            now, c2s, s2c, rtt, (long) rttVar,
-                            thr, status, getCongestionAlgorithm(),
-                            bufferSize, congestionWindow, ssthresh
-                        );
-                        csvOut.flush();
-                    }
-                    Thread.sleep(intervalMs);
-                }
-            } catch (InterruptedException ignored) {}
-            finally {
-                synchronized (lock) {
-                    if (csvOut != null) { csvOut.flush(); csvOut.close(); csvOut = null; }
-                }
-            }
-        }, "CSV-Logger");
+        logRate = newRateWindow();
+        if (connectionAlive) MetricsScheduler.shared().register(this, intervalMs);
+    }
 
-        loggingThread.setDaemon(true);
-        loggingThread.start();
+    /** Linha [METRICS] a cada ~500ms enquanto houver tráfego, pelo agendador compartilhado */
+    public void startMonitoring() {
+        monitoring = true;
+        if (connectionAlive) MetricsScheduler.shared().register(this, MONITOR_INTERVAL_MS);
     }
 
-    AlgorithmSelector selector = new AlgorithmSelector(this);
+    @Override
+    public boolean idle(long nowMs) {
+        return getTotalBytes() == lastSampledBytes && nowMs - lastSampleAt < IDLE_HEARTBEAT_MS;
+    }
 
-    public void monitor() {
-        long lastC2S = 0, lastS2C = 0;
+    /** Uma passada do agendador: cwnd uma vez, depois monitor e log */
+    @Override
+    public void sample(long nowMs) {
+        if (!connectionAlive) {
+            // registrada depois do close (corrida com startBackgroundLogging)
+            MetricsScheduler.shared().unregister(this);
+            return;
+        }
+        lastSampledBytes = getTotalBytes();
+        lastSampleAt = nowMs;
 
-        try {
-            while (connectionAlive) {
-                long rtt = getRTT();
-            if (rtt >= 0) updateRttVar(rtt);
-            else rtt = (lastRtt >= 0) ? lastRtt : 1000;
-
-            updateCongestionWindow();
-
-            long c2s, s2c;
-            int cwnd;
-            synchronized (lock) {
-                c2s = totalClientBytes;
-                s2c = totalServerBytes;
-                cwnd = congestionWindow;
-            }
+        updateCongestionWindow();
+        if (monitoring) printMetrics();
+        RateWindow rate = logRate;
+        if (logging && rate != null) writeLogRow(rate.rate());
+    }
 
-            // só imprime se houver bytes novos
-            if (c2s != lastC2S || s2c != lastS2C) {
-                System.out.println("[METRICS] C->S=" + c2s +
-                        " | S->C=" + s2c +
-                        " | RTT=" + rtt + "µs" +
-                        " | RTTVAR=" + (long) rttVar +
-                        " | BUFFER=" + bufferSize +
-                        " | CWND=" + cwnd +
-                        " | SSTHRESH=" + ssthresh);
-                lastC2S = c2s;
-                lastS2C = s2c;
-            }
+    private void printMetrics() {
+        long rtt = currentRtt();
+        long c2s = getTotalClientBytes();
+        long s2c = getTotalServerBytes();
+        int cwnd = congestionWindow;
+
+        // só imprime se houver bytes novos
+        if (c2s != lastC2S || s2c != lastS2C) {
+            System.out.println("[METRICS] C->S=" + c2s +
+                    " | S->C=" + s2c +
+                    " | RTT=" + rtt + "µs" +
+                    " | RTTVAR=" + (long) rttVar +
+                    " | RETRANS=" + getRetransmits() +
+                    " | UNACKED=" + getUnackedBytes() +
+                    " | BUFFER=" + bufferSize +
+                    " | CWND=" + cwnd +
+                    " | SSTHRESH=" + ssthresh +
+                    " | POOL hit=" + getPoolHits() + " miss=" + getPoolMisses() +
+                    " mem=" + getPoolFootprint() / 1024 + "KB" +
+                    " | GLOBAL ativas=" + registry.getActiveConnections() +
+                    " pipes=" + registry.getActivePipes());
+            lastC2S = c2s;
+            lastS2C = s2c;
+
+            // percentis a cada ~5s (10 ciclos)
+            if (++ticks % 10 == 0) printHistograms("[HIST]");
+        }
+    }
 
-            Thread.sleep(500); // mantém intervalo de verificação
-            } 
-    }catch (Exception ignored) {}
-        stopBackgroundLogging();
+    private void printHistograms(String tag) {
+        for (RelayHistogram kind : RelayHistogram.values()) {
+            LogHistogram.Snapshot s = getHistogram(kind);
+            if (s.getCount() > 0) System.out.println(tag + " " + kind.label() + " " + s);
+        }
+    }
+
+    /** Uma linha do log (colunas de BinaryMetricsLog.COLUMNS) */
+    private void writeLogRow(long thr) {
+        long rtt = currentRtt();
+        // FAIL: nenhuma medição ainda, rtt é o valor padrão de 1ms
+        String status = (lastRtt >= 0 || kernelRtt >= 0) ? "OK" : "FAIL";
+
+        lock.lock();
+        try {
+            if (binaryLog != null) {
+                long[] row = {
+                        System.currentTimeMillis(), getTotalClientBytes(), getTotalServerBytes(), rtt, (long) rttVar,
+                        thr, 0, 0, bufferSize, congestionWindow, ssthresh,
+                        appliedSndBuf, appliedRcvBuf, appliedNoDelay ? 1 : 0,
+                        getRetransmits(), getUnackedBytes()
+                };
+                binaryLog.append(id, row, status, getCongestionAlgorithm());
+            } else if (csvOut != null) {
+                csvOut.printf(
+                    "%d,%d,%d,%d,%d,%d,%s,%s,%d,%d,%d,%d,%d,%d,%d,%d%n",
+                    System.currentTimeMillis(), getTotalClientBytes(), getTotalServerBytes(), rtt, (long) rttVar,
+                    thr, status, getCongestionAlgorithm(),
+                    bufferSize, congestionWindow, ssthresh,
+                    appliedSndBuf, appliedRcvBuf, appliedNoDelay ? 1 : 0,
+                    getRetransmits(), getUnackedBytes()
+                );
+                csvOut.flush();
+            }
+        } catch (Exception e) {
+            System.err.println("[METRICS] erro gravando log: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
     }
 
     public void stopBackgroundLogging() {
         logging = false;
-        if (loggingThread != null) loggingThread.interrupt();
-        synchronized (lock) {
+        if (!monitoring) MetricsScheduler.shared().unregister(this);
+        lock.lock();
+        try {
             if (csvOut != null) { csvOut.flush(); csvOut.close(); csvOut = null; }
+            if (binaryLog != null) { binaryLog.closeConnection(id); binaryLog = null; }
+        } finally {
+            lock.unlock();
         }
     }
 
+    /** Pode ser chamado pelos dois pipes e pelo handler; os agregados só contam uma vez */
     public void close() {
         connectionAlive = false;
+        monitoring = false;
+        MetricsScheduler.shared().unregister(this);
+        if (closed.compareAndSet(false, true)) {
+            KernelTcpSampler.shared().untrack(kernelKey);
+            registry.connectionClosed(this);
+        } else {
+            registry.retire(this); // amostras da direção que terminou depois
+        }
         stopBackgroundLogging();
     }
 
@@ -232,16 +419,12 @@ public class TCPMetrics {
             String os = System.getProperty("os.name").toLowerCase();
             if (!os.contains("linux")) throw new UnsupportedOperationException("Not Linux");
 
-            Process p = Runtime.getRuntime().exec("cat /proc/sys/net/ipv4/tcp_congestion_control");
-            p.waitFor();
-            try (Scanner sc = new Scanner(p.getInputStream())) {
-                if (sc.hasNext()) {
-                    congestionAlgorithm = sc.next().trim().toUpperCase();
-                    System.out.println("[TCPMetrics] Detected Linux TCP CC = " + congestionAlgorithm);
-                    return;
-                }
-            }
-            throw new Exception("empty result");
+            // algoritmo do próprio socket (TCP_CONGESTION); sem a camada nativa, o padrão do /proc
+            String algo = NativeTcp.shared().getCongestion(server);
+            if (algo == null) algo = KernelTcpSampler.defaultCongestionControl();
+            if (algo == null) throw new Exception("empty result");
+            congestionAlgorithm = algo.toUpperCase();
+            System.out.println("[TCPMetrics] Detected Linux TCP CC = " + congestionAlgorithm);
         } catch (Exception e) {
             congestionAlgorithm = "WINDOWS-MOCK";
             System.out.println("[TCPMetrics] Falling back to Windows-safe congestion control mock");
@@ -269,52 +452,27 @@ public class TCPMetrics {
         System.out.println("  Algorithm: " + congestionAlgorithm);
         System.out.println("  Total C->S: " + getTotalClientBytes() + " bytes");
         System.out.println("  Total S->C: " + getTotalServerBytes() + " bytes");
-        System.out.println("  Throughput: " + getThroughputBps() + " B/s");
+        System.out.println("  Throughput (média): " + getAverageThroughputBps() + " B/s");
+        System.out.println("  Global: " + registry);
+        System.out.println("  " + MetricsScheduler.shared());
+        System.out.println("  Pools: " + BufferPool.HEAP + " | " + BufferPool.DIRECT);
         System.out.println("================================\n");
     }
 
     // -------------------- CWND Update --------------------
 
     public void updateCongestionWindow() {
-        int measuredCwnd = fetchCwndFromLinux();
-        if (measuredCwnd > 0) {
-            congestionWindow = measuredCwnd;
+        // valores do kernel publicados pelo amostrador compartilhado
+        KernelTcpStats k = kernelStats;
+        if (k != null && k.cwnd > 0) {
+            congestionWindow = k.cwnd;
+            if (k.ssthresh > 0) ssthresh = k.ssthresh;
             return;
         }
         // fallback: TCP Tahoe logic
         congestionWindow = tcpTahoeLogic(congestionWindow, ssthresh);
     }
 
-    private int fetchCwndFromLinux() {
-        try {
-            String os = System.getProperty("os.name").toLowerCase();
-            if (!os.contains("linux")) return -1;
-
-            String localIp = client.getLocalAddress().getHostAddress();
-            int localPort = client.getLocalPort();
-            String remoteIp = client.getInetAddress().getHostAddress();
-            int remotePort = client.getPort();
-
-            Process p = Runtime.getRuntime().exec(
-                    String.format("ss -ti src %s:%d dst %s:%d", localIp, localPort, remoteIp, remotePort)
-            );
-
-            try (Scanner sc = new Scanner(p.getInputStream())) {
-                while (sc.hasNextLine()) {
-                    String line = sc.nextLine().trim();
-                    if (line.contains("cwnd:")) {
-                        String[] parts = line.split("\\s+");
-                        for (String token : parts) {
-                            if (token.startsWith("cwnd:")) return Integer.parseInt(token.substring(5));
-                        }
-                    }
-                }
-            }
-            p.waitFor();
-        } catch (Exception ignored) {}
-        return -1;
-    }
-
     private int tcpTahoeLogic(int cwnd, int ssthresh) {
         if (cwnd < ssthresh) cwnd = Math.min(cwnd * 2, ssthresh);
         else cwnd += 1;
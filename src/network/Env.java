@@ -0,0 +1,19 @@
+package network;
+
+/** Leitura de configuração numérica via variáveis de ambiente */
+public final class Env {
+
+    private Env() {}
+
+    /** Valor inteiro de 'name'; ausente ou em branco usa 'def', inválido avisa e usa 'def' */
+    public static int intValue(String name, int def) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) return def;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("[CONFIG] " + name + " inválido: " + value + ". Usando " + def + ".");
+            return def;
+        }
+    }
+}
@@ -2,6 +2,6 @@ package network;
 
 public class ServerMain {
     public static void main(String[] args) {
-        new ServerTCP(9000).run();
+        new ServerTCP(9000, ThreadMode.fromEnv()).run();
     }
 }
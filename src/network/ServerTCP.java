@@ -1,28 +1,38 @@
 package network;
 
+import buffer.BufferPool;
+import buffer.PooledReader;
+import buffer.WriteCoalescer;
 
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 public class ServerTCP implements Runnable {
     private int port;
+    private final ThreadMode threadMode;
 
     public ServerTCP(int port) {
+        this(port, ThreadMode.PLATFORM);
+    }
+
+    public ServerTCP(int port, ThreadMode threadMode) {
         this.port = port;
+        this.threadMode = threadMode;
     }
 
     @Override
     public void run() {
         try (ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("[SERVER] Escutando na porta " + port);
+            System.out.println("[SERVER] Escutando na porta " + port + " (threads " + threadMode + ")");
 
             while (true) {
                 Socket client = serverSocket.accept();
                 System.out.println("[SERVER] Cliente conectado: " + client);
 
-                new Thread(() -> handleClient(client)).start();
+                threadMode.start("Server-Client", () -> handleClient(client));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -31,20 +41,23 @@ public class ServerTCP implements Runnable {
 
     private void handleClient(Socket client) {
         try (InputStream in = client.getInputStream();
-            OutputStream out = client.getOutputStream()) {
+            OutputStream out = client.getOutputStream();
+            PooledReader reader = new PooledReader(in, BufferPool.HEAP);
+            WriteCoalescer writer = new WriteCoalescer(out)) {
 
-            byte[] buffer = new byte[8192]; // buffer de leitura
-            int bytesRead;
+            ByteBuffer chunk; // buffer de leitura emprestado do pool
             long totalBytes = 0;
             long bytesSinceLastLog = 0;
 
-            while ((bytesRead = in.read(buffer)) != -1) {
+            while ((chunk = reader.next(8192)) != null) {
+                byte[] buffer = chunk.array();
+                int bytesRead = chunk.remaining();
                 totalBytes += bytesRead;
                 bytesSinceLastLog += bytesRead;
 
-                // eco para o cliente
-                out.write(buffer, 0, bytesRead);
-                out.flush();
+                // eco para o cliente (enviado quando a entrada fica ociosa ou o orçamento estoura)
+                boolean idle = reader.idle();
+                writer.write(buffer, 0, bytesRead, idle);
 
                 // preview do chunk (máximo 50 chars)
                 int previewLen = Math.min(bytesRead, 50);
@@ -56,10 +69,14 @@ public class ServerTCP implements Runnable {
                     System.out.println("[SERVER] Total recebido até agora: " + totalBytes + " bytes");
                     bytesSinceLastLog = 0;
                 }
+                reader.recycle(idle);
             }
 
+            writer.flush();
+
             // log final
             System.out.println("[SERVER] Conexão encerrada. Total recebido: " + totalBytes + " bytes");
+            System.out.println("[SERVER] Coalescência: " + writer);
 
         } catch (Exception e) {
             System.out.println("[SERVER] Cliente desconectado abruptamente: " + client);
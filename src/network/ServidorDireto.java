@@ -1,24 +1,32 @@
 package network;
 
+import metrics.PassiveRttEstimator;
+
 import java.io.*;
 import java.net.ServerSocket;
 import java.net.Socket;
 
 public class ServidorDireto {
     private final int port;
+    private final ThreadMode threadMode;
 
     public ServidorDireto(int port) {
+        this(port, ThreadMode.PLATFORM);
+    }
+
+    public ServidorDireto(int port, ThreadMode threadMode) {
         this.port = port;
+        this.threadMode = threadMode;
     }
 
     public void start() {
         try (ServerSocket serverSocket = new ServerSocket(port)) {
-            System.out.println("[DIRECT-SERVER] Escutando na porta " + port);
+            System.out.println("[DIRECT-SERVER] Escutando na porta " + port + " (threads " + threadMode + ")");
 
             while (true) {
                 Socket client = serverSocket.accept();
                 System.out.println("[DIRECT-SERVER] Cliente conectado: " + client);
-                new Thread(() -> handleClient(client)).start();
+                threadMode.start("Direct-Client", () -> handleClient(client));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -28,8 +36,14 @@ public class ServidorDireto {
     private void handleClient(Socket client) {
         long totalReceived = 0;
         long totalSent = 0;
-        long lastRtt = -1;
-        double rttVar = 0;
+        long[] lastRtt = {-1};
+        double[] rttVar = {0};
+
+        // RTT passivo: do eco enviado até os próximos bytes do cliente
+        PassiveRttEstimator rttEstimator = new PassiveRttEstimator(rtt -> {
+            if (lastRtt[0] != -1) rttVar[0] = 0.75 * rttVar[0] + 0.25 * Math.abs(rtt - lastRtt[0]);
+            lastRtt[0] = rtt;
+        });
 
         byte[] buf = new byte[8192];
 
@@ -50,25 +64,13 @@ public class ServidorDireto {
                     int len = in.read(buf);
                     if (len == -1) break;
                     totalReceived += len;
+                    rttEstimator.onResponse();
 
                     // ecoa
                     out.write(buf, 0, len);
                     out.flush();
                     totalSent += len;
-
-                    // RTT estimado (ping-pong)
-                    try {
-                        byte[] ping = {42};
-                        byte[] pong = new byte[1];
-                        long start = System.nanoTime();
-                        out.write(ping);
-                        out.flush();
-                        in.read(pong);
-                        long end = System.nanoTime();
-                        long rtt = (end - start) / 1000; // µs
-                        if (lastRtt != -1) rttVar = 0.75 * rttVar + 0.25 * Math.abs(rtt - lastRtt);
-                        lastRtt = rtt;
-                    } catch (Exception ignored) {}
+                    rttEstimator.onForward();
 
                     long now = System.currentTimeMillis();
                     if (now - lastTime >= 1000) {
@@ -79,14 +81,14 @@ public class ServidorDireto {
 
                         // CSV
                         csv.printf("%d,%d,%d,%d,%.0f,%d,%s%n",
-                                now, totalReceived, totalSent, lastRtt, rttVar, throughput, status);
+                                now, totalReceived, totalSent, lastRtt[0], rttVar[0], throughput, status);
                         csv.flush();
 
                         // Print terminal
                         System.out.println("[METRICS] C->S=" + totalReceived +
                                 " | S->C=" + totalSent +
-                                " | RTT=" + lastRtt + "µs" +
-                                " | RTTVAR=" + (long) rttVar +
+                                " | RTT=" + lastRtt[0] + "µs" +
+                                " | RTTVAR=" + (long) rttVar[0] +
                                 " | Throughput=" + throughput + " B/s");
 
                         lastTime = now;
@@ -100,6 +102,6 @@ public class ServidorDireto {
     }
 
     public static void main(String[] args) {
-        new ServidorDireto(9001).start();
+        new ServidorDireto(9001, ThreadMode.fromEnv()).start();
     }
 }
@@ -0,0 +1,53 @@
+package network;
+
+import buffer.BufferPool;
+
+/**
+ * Tipo de thread usada para conexões (proxy e servidores de teste).
+ *
+ * PLATFORM: threads do sistema operacional (comportamento original).
+ * VIRTUAL:  virtual threads do Java 21, baratas o bastante para uma por socket.
+ */
+public enum ThreadMode {
+    PLATFORM,
+    VIRTUAL;
+
+    /** Lê THREAD_MODE do ambiente (PLATFORM se ausente ou inválido) */
+    public static ThreadMode fromEnv() {
+        String value = System.getenv("THREAD_MODE");
+        if (value == null || value.isBlank()) return PLATFORM;
+        try {
+            return ThreadMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("[THREAD] THREAD_MODE inválido: " + value + ". Usando PLATFORM.");
+            return PLATFORM;
+        }
+    }
+
+    public Thread.Builder builder(String name) {
+        return this == VIRTUAL
+                ? Thread.ofVirtual().name(name)
+                : Thread.ofPlatform().name(name);
+    }
+
+    /**
+     * Cria e inicia uma thread deste tipo. Threads de plataforma devolvem o
+     * cache local dos BufferPool ao terminar: são uma por conexão.
+     */
+    public Thread start(String name, Runnable task) {
+        if (this == VIRTUAL) return builder(name).start(task);
+        return builder(name).start(() -> {
+            try {
+                task.run();
+            } finally {
+                BufferPool.flushThreadCaches();
+            }
+        });
+    }
+
+    /** Igual a start(), mas threads de plataforma não impedem a JVM de encerrar */
+    public Thread startDaemon(String name, Runnable task) {
+        if (this == VIRTUAL) return start(name, task); // virtual threads são sempre daemon
+        return Thread.ofPlatform().name(name).daemon(true).start(task);
+    }
+}
@@ -1,117 +1,126 @@
 package optimizations;
 
+import buffer.WriteCoalescer;
+import metrics.RateWindow;
+import metrics.RelayHistogram;
 import metrics.TCPMetrics;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.util.List;
 
-public class AlgorithmSelector implements TCPOpPolicy {
+/**
+ * Heurística que escolhe a política pela RTT, variação e throughput da
+ * conexão e monta o PolicySnapshot correspondente. Limiares, tetos de
+ * buffer e pacing vêm do PolicySettings do snapshot (arquivo de política).
+ * Com policy=bandit a escolha passa para um BanditSelector por conexão,
+ * com estatísticas por destino; o snapshot de cada política é o mesmo.
+ *
+ * Roda só na thread do PolicyController (nunca em paralelo consigo mesma),
+ * fora do caminho de dados: por isso o estado aqui não precisa de volatile.
+ */
+public class AlgorithmSelector {
 
     private final TCPMetrics metrics;
+    // janela própria: não interfere na taxa calculada pelo CSV/monitor
+    private final RateWindow rate;
+    private final PolicyScope scope;
+    private BanditSelector bandit; // criado no primeiro uso de policy=bandit
 
-    private long pacingDelayMs = 0;
-    private long ackDelayUs = 0;
-    private int sendBufferSize = 4 * 1024;
-
-    private OpPolicyType current = OpPolicyType.BALANCED;
-    private long lastSwitch = 0;
-
-    private final boolean isLinux;
-
-    public AlgorithmSelector(TCPMetrics metrics) {
+    public AlgorithmSelector(TCPMetrics metrics, PolicyScope scope) {
         this.metrics = metrics;
-        this.isLinux = System.getProperty("os.name").toLowerCase().contains("linux");
+        this.rate = metrics.newRateWindow();
+        this.scope = scope;
     }
 
-    @Override
-    public void apply(byte[] buf, int len) {
-        long now = System.currentTimeMillis();
-        if (now - lastSwitch < 2500) return;
+    /** Ponto de partida de toda conexão: BALANCED sem mexer nos sockets (defaults do sistema) */
+    public static PolicySnapshot initial(PolicySettings settings) {
+        return new PolicySnapshot(OpPolicyType.BALANCED, 0, settings.pacingRate(), settings.pacingBurst(),
+                4 * 1024, true, WriteCoalescer.DEFAULT_BUDGET_US, 0, null, -1, settings, List.of());
+    }
 
+    /**
+     * Reavalia com as métricas atuais. Devolve o próprio 'current' se a
+     * política não mudou, ou o snapshot da nova política (version + 1).
+     */
+    public PolicySnapshot evaluate(PolicySnapshot current, long nowMs) {
         long rtt = metrics.getLastRtt();
         double var = metrics.getRttVar();
-        long thr = metrics.getThroughputBps();
+        long thr = rate.rate();
 
-        OpPolicyType chosen = pickPolicy(rtt, var, thr);
+        PolicySettings s = current.settings();
+        OpPolicyType chosen;
+        if (s.fixedPolicy() != null) chosen = s.fixedPolicy();
+        else if (s.bandit()) chosen = bandit(s).decide(nowMs, s);
+        else chosen = pickPolicy(rtt, var, thr, s);
+        if (chosen == current.type()) return current;
 
-        if (chosen != current) {
-            current = chosen;
-            applyNetworkTuning(chosen);
-        }
+        return retune(chosen, current);
+    }
 
-        lastSwitch = now;
+    /** Snapshot da política 'type' com os settings de 'current' (troca de política ou reload) */
+    public PolicySnapshot retune(OpPolicyType type, PolicySnapshot current) {
+        PolicySnapshot next = tune(type, current);
+        System.out.println("[ALG] " + next + " (buf " + current.sendBufferSize() + "->" + next.sendBufferSize() + ")");
+        return next;
     }
 
-    public OpPolicyType getCurrentPolicy() {
-        return current;
+    private BanditSelector bandit(PolicySettings s) {
+        if (bandit == null) {
+            String destination = scope.backendHost() == null ? "*" : scope.backendHost() + ":" + scope.backendPort();
+            bandit = new BanditSelector(destination, BanditStats.forDestination(destination, s.banditSeed()),
+                    metrics::getTotalBytes,
+                    () -> metrics.getHistogram(RelayHistogram.RTT_US),
+                    () -> metrics.getHistogram(RelayHistogram.FORWARD_US));
+        }
+        return bandit;
     }
 
     /** Determina política baseada nos últimos valores de RTT, variação e throughput */
-    private OpPolicyType pickPolicy(long rtt, double var, long thr) {
-        if (rtt > 5_000_000 || var > 3_000_000) return OpPolicyType.SAFE;
-        if (var > 900_000 || thr < 30_000) return OpPolicyType.CONSERVATIVE;
-        if (rtt < 700_000 && var < 100_000 && thr > 100_000) return OpPolicyType.AGGRESSIVE;
+    private OpPolicyType pickPolicy(long rtt, double var, long thr, PolicySettings s) {
+        if (rtt > s.safeRttUs() || var > s.safeRttVarUs()) return OpPolicyType.SAFE;
+        if (var > s.conservativeRttVarUs() || thr < s.conservativeMinBps()) return OpPolicyType.CONSERVATIVE;
+        if (rtt < s.aggressiveMaxRttUs() && var < s.aggressiveMaxRttVarUs() && thr > s.aggressiveMinBps()) return OpPolicyType.AGGRESSIVE;
         return OpPolicyType.BALANCED;
     }
 
-    /** Aplica ajustes de rede dependendo da política */
-    private void applyNetworkTuning(OpPolicyType policy) {
-
-        String algo;
+    /** Ajustes de rede da política; o buffer parte do snapshot anterior */
+    private PolicySnapshot tune(OpPolicyType policy, PolicySnapshot prev) {
 
+        PolicySettings s = prev.settings();
         int minBuf = 1 * 1024;
-        int maxBufAggressive = 256 * 1024;
-        int maxBufBalanced = 128 * 1024;
-        int maxBufConservative = 64 * 1024;
-        int maxBufSafe = 32 * 1024;
+        int maxBuf = s.maxBuffer(policy);
+        long rate = s.pacingRate();
+        long burst = s.pacingBurst();
 
-        int prevBuf = sendBufferSize;
+        // orçamento do coalescer proporcional à RTT típica da política: em
+        // enlaces rápidos 200µs pesam, em enlaces lentos agrupar mais economiza pacotes
+        long budget = WriteCoalescer.DEFAULT_BUDGET_US;
+        long version = prev.version() + 1;
+        int buf = prev.sendBufferSize();
 
         switch (policy) {
             case AGGRESSIVE:
-                pacingDelayMs = 0;
-                ackDelayUs = 15_000;
-                algo = "bbr";
-                sendBufferSize = adjustBuffer(sendBufferSize, 8*1024, maxBufAggressive, minBuf);
-                break;
+                // sem pacing; sem limite de não-enviados: vazão acima de latência
+                return new PolicySnapshot(policy, version, 0, burst,
+                        adjustBuffer(buf, 8*1024, maxBuf, minBuf), true,
+                        budget / 2, 15_000, "bbr", -1, s, prev.chain());
 
             case BALANCED:
-                pacingDelayMs = 1;
-                ackDelayUs = 40_000;
-                algo = "cubic";
-                sendBufferSize = adjustBuffer(sendBufferSize, 4*1024, maxBufBalanced, minBuf);
-                break;
+                return new PolicySnapshot(policy, version, rate, burst,
+                        adjustBuffer(buf, 4*1024, maxBuf, minBuf), true,
+                        budget, 40_000, "cubic", maxBuf, s, prev.chain());
 
             case CONSERVATIVE:
-                pacingDelayMs = 3;
-                ackDelayUs = 120_000;
-                algo = "reno";
-                sendBufferSize = adjustBuffer(sendBufferSize, 2*1024, maxBufConservative, minBuf);
-                break;
+                // deixa o Nagle agrupar segmentos
+                return new PolicySnapshot(policy, version, rate / 3, burst,
+                        adjustBuffer(buf, 2*1024, maxBuf, minBuf), false,
+                        budget * 2, 120_000, "reno", maxBuf, s, prev.chain());
 
             case SAFE:
             default:
-                pacingDelayMs = 8;
-                ackDelayUs = 200_000;
-                algo = "westwood";
-                sendBufferSize = adjustBuffer(sendBufferSize, 1*1024, maxBufSafe, minBuf);
-                break;
+                return new PolicySnapshot(OpPolicyType.SAFE, version, rate / 8, burst,
+                        adjustBuffer(buf, 1*1024, maxBuf, minBuf), false,
+                        budget * 4, 200_000, "westwood", maxBuf, s, prev.chain());
         }
-
-        metrics.setBufferSize(sendBufferSize);
-
-        if (isLinux) {
-            boolean ok = setLinuxCongestionAlgorithm(algo);
-            if (!ok) metrics.setCongestionAlgorithm("LINUX-FAILED-" + algo.toUpperCase());
-            else metrics.setCongestionAlgorithm(algo.toUpperCase());
-        } else metrics.setCongestionAlgorithm("MOCK-" + algo.toUpperCase());
-
-        System.out.println("[ALG] Policy=" + policy +
-                " TCP=" + algo +
-                " pacing=" + pacingDelayMs + "ms" +
-                " ack=" + ackDelayUs + "us" +
-                " buf=" + prevBuf + "->" + sendBufferSize +
-                (isLinux ? " (sysctl REAL)" : " (mock)"));
     }
 
     /** Ajusta buffer gradualmente, sobe ou desce dependendo do limite da política */
@@ -121,37 +130,4 @@ public class AlgorithmSelector implements TCPOpPolicy {
         if (current < min) current = min;
         return current;
     }
-
-    /** Troca algoritmo TCP no Linux via sysctl */
-    private boolean setLinuxCongestionAlgorithm(String algo) {
-        try {
-            Process p = new ProcessBuilder("sysctl",
-                    "-w", "net.ipv4.tcp_congestion_control=" + algo)
-                    .redirectErrorStream(true)
-                    .start();
-
-            p.waitFor();
-
-            Process check = new ProcessBuilder("sysctl",
-                    "net.ipv4.tcp_congestion_control")
-                    .redirectErrorStream(true)
-                    .start();
-
-            try (BufferedReader br = new BufferedReader(new InputStreamReader(check.getInputStream()))) {
-                String line = br.readLine();
-                if (line != null && line.contains(algo)) {
-                    return true;
-                }
-            }
-
-        } catch (Exception e) {
-            System.err.println("[SYSCTL] ERRO ao trocar algoritmo: " + e.getMessage());
-        }
-
-        return false;
-    }
-
-    public long getPacingDelayMs() { return pacingDelayMs; }
-    public long getAckDelayUs() { return ackDelayUs; }
-    public int getSendBufferSize() { return sendBufferSize; }
 }
@@ -0,0 +1,88 @@
+package optimizations;
+
+import metrics.LogHistogram;
+
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Escolha da política por bandit (policy=bandit no arquivo de política):
+ * os quatro OpPolicyType são braços e a recompensa é medida na própria
+ * conexão, no lugar dos limiares fixos do AlgorithmSelector.
+ *
+ * Um braço fica ao menos banditDwellMs em uso. Ao fim do período mede o
+ * goodput (bytes encaminhados / tempo) e a latência (p90 da RTT + p99 do
+ * tempo de encaminhamento no proxy, só as amostras do período), guarda a
+ * medida nas BanditStats do destino e sorteia o próximo braço (Thompson
+ * ou UCB). Período sem bytes não diz nada sobre o braço: só recomeça.
+ * Período sem amostra de RTT vai sem latência (termo neutro na recompensa).
+ *
+ * O relógio é o 'nowMs' de quem chama (o MetricsScheduler em produção, um
+ * relógio simulado em testenv.BanditSimulation); com a mesma semente e as
+ * mesmas medidas a sequência de braços se repete.
+ */
+public final class BanditSelector {
+
+    private final String destination;
+    private final BanditStats stats;
+    private final LongSupplier bytes;
+    private final Supplier<LogHistogram.Snapshot> rtt;
+    private final Supplier<LogHistogram.Snapshot> forward;
+
+    private OpPolicyType arm;
+    private long armSince;
+    private long bytesAtStart;
+    private LogHistogram.Snapshot rttAtStart;
+    private LogHistogram.Snapshot forwardAtStart;
+
+    public BanditSelector(String destination, BanditStats stats, LongSupplier bytes,
+                          Supplier<LogHistogram.Snapshot> rtt, Supplier<LogHistogram.Snapshot> forward) {
+        this.destination = destination;
+        this.stats = stats;
+        this.bytes = bytes;
+        this.rtt = rtt;
+        this.forward = forward;
+    }
+
+    /** Braço para o próximo período; o mesmo enquanto o dwell não vence */
+    public OpPolicyType decide(long nowMs, PolicySettings s) {
+        boolean ucb = "ucb".equals(s.banditStrategy());
+        double w = s.banditLatencyWeight();
+        if (arm == null) {
+            arm = stats.choose(ucb, w);
+            start(nowMs);
+            return arm;
+        }
+
+        long elapsed = nowMs - armSince;
+        if (elapsed < s.banditDwellMs()) return arm;
+
+        long sent = bytes.getAsLong() - bytesAtStart;
+        if (sent > 0 && elapsed > 0) {
+            double goodput = sent * 1000.0 / elapsed;
+            LogHistogram.Snapshot rttWindow = rtt.get().minus(rttAtStart);
+            long latency = rttWindow.getCount() == 0 ? -1
+                    : rttWindow.percentile(0.90) + forward.get().minus(forwardAtStart).percentile(0.99);
+            stats.update(arm, goodput, latency);
+
+            OpPolicyType next = stats.choose(ucb, w);
+            System.out.println(String.format("[BANDIT] %s: %s r=%.2f (%.1fMbit/s, lat=%s) -> %s %s",
+                    destination, arm, stats.score(goodput, latency, w), goodput * 8 / 1e6,
+                    latency < 0 ? "sem amostra" : latency + "µs", next, stats.summary(w)));
+            arm = next;
+        }
+        start(nowMs);
+        return arm;
+    }
+
+    public OpPolicyType getArm() {
+        return arm;
+    }
+
+    private void start(long nowMs) {
+        armSince = nowMs;
+        bytesAtStart = bytes.getAsLong();
+        rttAtStart = rtt.get();
+        forwardAtStart = forward.get();
+    }
+}
@@ -0,0 +1,217 @@
+package optimizations;
+
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Estatísticas dos braços (OpPolicyType) de um destino, compartilhadas por
+ * todas as conexões para ele e mantidas enquanto o processo roda: uma
+ * conexão nova já começa com o que as anteriores aprenderam.
+ *
+ * Guarda as medidas brutas de cada período (goodput, latência), as últimas
+ * MAX_PERIODS por braço, e só as converte em recompensa na hora de escolher,
+ * todas contra as mesmas referências (melhor goodput e melhor latência entre
+ * as medidas guardadas):
+ *
+ *   r = (1 - w) * goodput / melhorGoodput + w * melhorLatência / latência
+ *
+ * Assim o primeiro período não vale 1.0 só por ser o primeiro, e períodos
+ * antigos e novos ficam na mesma escala. Período sem amostra de latência
+ * (ex.: tráfego só C→S, sem RTT passivo) recebe o termo de latência neutro
+ * (0.5), em vez de contar como latência perfeita.
+ *
+ * Thompson sampling usa Beta(1 + soma(r), 1 + soma(1 - r)) por braço; UCB1
+ * usa média + sqrt(2 ln N / n). Toda aleatoriedade vem do Random com a
+ * semente dada: a mesma sequência de medidas produz as mesmas escolhas.
+ *
+ * Métodos sincronizados: as conexões de um destino são avaliadas por
+ * threads diferentes do MetricsScheduler, sempre fora do caminho de dados.
+ */
+public final class BanditStats {
+
+    private static final Map<String, BanditStats> BY_DESTINATION = new ConcurrentHashMap<>();
+    private static final OpPolicyType[] ARMS = OpPolicyType.values();
+
+    /** Períodos guardados por braço; os mais antigos saem (e com eles as referências antigas) */
+    static final int MAX_PERIODS = 100;
+    private static final double NEUTRAL_LATENCY_SCORE = 0.5;
+
+    /** Medida de um período; latencyUs <= 0 = sem amostra */
+    private record Period(double goodputBps, long latencyUs) {}
+
+    private final Random random;
+    private final ArrayDeque<Period>[] periods = newPeriods();
+
+    public BanditStats(long seed) {
+        this.random = new Random(seed);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ArrayDeque<Period>[] newPeriods() {
+        ArrayDeque<Period>[] p = (ArrayDeque<Period>[]) new ArrayDeque<?>[ARMS.length];
+        for (int i = 0; i < p.length; i++) p[i] = new ArrayDeque<>();
+        return p;
+    }
+
+    /**
+     * Estatísticas do destino para a semente dada; 'seed' 0 = semente do
+     * relógio. Trocar banditSeed no arquivo de política começa estatísticas
+     * novas para as conexões abertas depois (as já abertas mantêm as suas).
+     */
+    public static BanditStats forDestination(String destination, long seed) {
+        return BY_DESTINATION.computeIfAbsent(destination + "#" + seed,
+                d -> new BanditStats(seed == 0 ? System.nanoTime() : seed ^ destination.hashCode()));
+    }
+
+    /** Por "destino#semente" */
+    public static Map<String, BanditStats> all() {
+        return BY_DESTINATION;
+    }
+
+    /** Guarda a medida de um período do braço */
+    public synchronized void update(OpPolicyType arm, double goodputBps, long latencyUs) {
+        ArrayDeque<Period> p = periods[arm.ordinal()];
+        if (p.size() >= MAX_PERIODS) p.pollFirst();
+        p.addLast(new Period(goodputBps, latencyUs));
+    }
+
+    /** Recompensa de uma medida contra as referências atuais (para log e simulação) */
+    public synchronized double score(double goodputBps, long latencyUs, double latencyWeight) {
+        return score(new Period(goodputBps, latencyUs), bestGoodput(), bestLatencyUs(), latencyWeight);
+    }
+
+    private static double score(Period p, double bestGoodput, long bestLatencyUs, double latencyWeight) {
+        double g = bestGoodput <= 0 ? 0 : Math.min(1, p.goodputBps() / bestGoodput);
+        double l = p.latencyUs() <= 0 || bestLatencyUs == Long.MAX_VALUE
+                ? NEUTRAL_LATENCY_SCORE
+                : Math.min(1, (double) bestLatencyUs / p.latencyUs());
+        double w = Math.max(0, Math.min(1, latencyWeight));
+        return (1 - w) * g + w * l;
+    }
+
+    private double bestGoodput() {
+        double best = 0;
+        for (ArrayDeque<Period> arm : periods) {
+            for (Period p : arm) best = Math.max(best, p.goodputBps());
+        }
+        return best;
+    }
+
+    private long bestLatencyUs() {
+        long best = Long.MAX_VALUE;
+        for (ArrayDeque<Period> arm : periods) {
+            for (Period p : arm) if (p.latencyUs() > 0) best = Math.min(best, p.latencyUs());
+        }
+        return best;
+    }
+
+    /** Soma das recompensas de cada braço, todas com as referências atuais */
+    private double[] rewardSums(double latencyWeight) {
+        double bestGoodput = bestGoodput();
+        long bestLatencyUs = bestLatencyUs();
+        double[] sums = new double[ARMS.length];
+        for (int i = 0; i < ARMS.length; i++) {
+            for (Period p : periods[i]) sums[i] += score(p, bestGoodput, bestLatencyUs, latencyWeight);
+        }
+        return sums;
+    }
+
+    /** Próximo braço; empates ficam com a ordem de OpPolicyType */
+    public synchronized OpPolicyType choose(boolean ucb, double latencyWeight) {
+        double[] sums = rewardSums(latencyWeight);
+        return ucb ? chooseUcb(sums) : chooseThompson(sums);
+    }
+
+    private OpPolicyType chooseThompson(double[] sums) {
+        OpPolicyType best = ARMS[0];
+        double bestSample = -1;
+        for (OpPolicyType arm : ARMS) {
+            int i = arm.ordinal();
+            double sample = sampleBeta(1 + sums[i], 1 + periods[i].size() - sums[i]);
+            if (sample > bestSample) {
+                bestSample = sample;
+                best = arm;
+            }
+        }
+        return best;
+    }
+
+    private OpPolicyType chooseUcb(double[] sums) {
+        long total = 0;
+        for (OpPolicyType arm : ARMS) {
+            if (periods[arm.ordinal()].isEmpty()) return arm; // cada braço é tentado uma vez
+            total += periods[arm.ordinal()].size();
+        }
+        OpPolicyType best = ARMS[0];
+        double bestScore = -1;
+        for (OpPolicyType arm : ARMS) {
+            int i = arm.ordinal();
+            int n = periods[i].size();
+            double score = sums[i] / n + Math.sqrt(2 * Math.log(total) / n);
+            if (score > bestScore) {
+                bestScore = score;
+                best = arm;
+            }
+        }
+        return best;
+    }
+
+    // Beta(a, b) = X / (X + Y), X ~ Gamma(a), Y ~ Gamma(b)
+    private double sampleBeta(double a, double b) {
+        double x = sampleGamma(a);
+        double y = sampleGamma(b);
+        return x / (x + y);
+    }
+
+    // Marsaglia-Tsang; aqui shape >= 1 sempre (priori 1 + soma)
+    private double sampleGamma(double shape) {
+        double d = shape - 1.0 / 3;
+        double c = 1 / Math.sqrt(9 * d);
+        while (true) {
+            double x, v;
+            do {
+                x = random.nextGaussian();
+                v = 1 + c * x;
+            } while (v <= 0);
+            v = v * v * v;
+            double u = random.nextDouble();
+            if (u < 1 - 0.0331 * x * x * x * x) return d * v;
+            if (Math.log(u) < 0.5 * x * x + d * (1 - v + Math.log(v))) return d * v;
+        }
+    }
+
+    /** Períodos guardados do braço (no máximo MAX_PERIODS) */
+    public synchronized long getPulls(OpPolicyType arm) {
+        return periods[arm.ordinal()].size();
+    }
+
+    public synchronized double getMeanReward(OpPolicyType arm, double latencyWeight) {
+        int n = periods[arm.ordinal()].size();
+        return n == 0 ? 0 : rewardSums(latencyWeight)[arm.ordinal()] / n;
+    }
+
+    /** Períodos e recompensa média por braço, para o log */
+    public synchronized String summary(double latencyWeight) {
+        double[] sums = rewardSums(latencyWeight);
+        StringBuilder sb = new StringBuilder("Bandit{");
+        for (OpPolicyType arm : ARMS) {
+            int i = arm.ordinal();
+            int n = periods[i].size();
+            if (i > 0) sb.append(' ');
+            sb.append(arm).append('=').append(n).append(String.format("/%.2f", n == 0 ? 0 : sums[i] / n));
+        }
+        return sb.append('}').toString();
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("Bandit{");
+        for (OpPolicyType arm : ARMS) {
+            if (arm.ordinal() > 0) sb.append(' ');
+            sb.append(arm).append('=').append(periods[arm.ordinal()].size());
+        }
+        return sb.append('}').toString();
+    }
+}
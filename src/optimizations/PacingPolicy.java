@@ -0,0 +1,60 @@
+package optimizations;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Pacing da conexão por balde de tokens, no lugar do Thread.sleep por chunk.
+ *
+ * Taxa e rajada vêm do snapshot publicado pelo PolicyController (mudam a
+ * cada troca de política). A política não segura a thread:
+ * pacingDelayNanos() só diz por quanto tempo a escrita deve ser adiada, e o
+ * pipe espera o TimerWheel (bloqueante) ou reagenda a escrita (NIO).
+ */
+public class PacingPolicy implements TCPOpPolicy {
+
+    // totais do processo, para o /metrics
+    private static final LongAdder DEFERRED = new LongAdder();
+    private static final LongAdder DEFERRED_NANOS = new LongAdder();
+
+    private final PolicyController controller;
+    private final TokenBucket bucket;
+    private volatile PolicySnapshot applied;
+
+    public PacingPolicy(PolicyController controller) {
+        this.controller = controller;
+        this.applied = controller.snapshot();
+        this.bucket = new TokenBucket(applied.pacingRate(), applied.pacingBurst());
+    }
+
+    @Override
+    public void apply(byte[] buf, int len) {
+        // nada a fazer com o payload: o pacing é decidido em pacingDelayNanos()
+    }
+
+    @Override
+    public void apply(ByteBuffer data) {
+    }
+
+    @Override
+    public long pacingDelayNanos(int len) {
+        // snapshot novo = troca de política; as duas direções podem reconfigurar, com os mesmos valores
+        PolicySnapshot s = controller.snapshot();
+        if (s != applied) {
+            applied = s;
+            bucket.setRate(s.pacingRate(), s.pacingBurst());
+        }
+
+        long wait = bucket.reserve(len, System.nanoTime());
+        if (wait > 0) {
+            DEFERRED.increment();
+            DEFERRED_NANOS.add(wait);
+        }
+        return wait;
+    }
+
+    public TokenBucket getBucket() { return bucket; }
+
+    public static long getTotalDeferred() { return DEFERRED.sum(); }
+    public static long getTotalDeferredNanos() { return DEFERRED_NANOS.sum(); }
+}
@@ -0,0 +1,15 @@
+package optimizations;
+
+/** Elo 'pacing': balde de tokens com a taxa da política atual (PacingPolicy) */
+public class PacingPolicyProvider implements PolicyProvider {
+
+    @Override
+    public String name() {
+        return "pacing";
+    }
+
+    @Override
+    public TCPOpPolicy create(PolicyController controller) {
+        return new PacingPolicy(controller);
+    }
+}
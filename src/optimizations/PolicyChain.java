@@ -0,0 +1,110 @@
+package optimizations;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Política de uma conexão montada pelo arquivo de política: os elos da
+ * cadeia (PolicyProvider) mais o tuning do PolicyController.
+ *
+ * Cadeia, settings e tuning vêm do mesmo PolicySnapshot: um reload troca
+ * tudo de uma vez, e o caminho de dados só faz uma leitura volatile por
+ * chamada. Com optimization=false no escopo, isEnabled() desliga a cadeia
+ * nos pipes sem recriar a conexão.
+ */
+public final class PolicyChain implements TCPOpPolicy {
+
+    /** Elo instanciado; o nome permite reaproveitá-lo (e ao seu estado) num reload */
+    public record Link(String name, TCPOpPolicy policy) {}
+
+    private final PolicyController controller;
+
+    public PolicyChain(PolicyController controller) {
+        this.controller = controller;
+    }
+
+    /**
+     * Instancia os elos de 'settings' pelos providers registrados. Elos com
+     * o mesmo nome em 'previous' são mantidos (o balde do pacing não zera).
+     */
+    static List<Link> build(PolicyController controller, PolicySettings settings, List<Link> previous) {
+        List<Link> links = new ArrayList<>(settings.chain().size());
+        for (String name : settings.chain()) {
+            Link kept = null;
+            for (Link l : previous) if (l.name().equals(name)) kept = l;
+            if (kept != null) {
+                links.add(kept);
+                continue;
+            }
+
+            PolicyProvider provider = PolicyConfig.shared().provider(name);
+            if (provider == null) {
+                System.out.println("[POLICY] Elo desconhecido ignorado: " + name);
+                continue;
+            }
+            try {
+                links.add(new Link(name, provider.create(controller)));
+            } catch (Exception e) {
+                System.out.println("[POLICY] Falha criando o elo " + name + ": " + e.getMessage());
+            }
+        }
+        return List.copyOf(links);
+    }
+
+    @Override
+    public void apply(byte[] buf, int len) {
+        List<Link> chain = controller.snapshot().chain();
+        for (int i = 0; i < chain.size(); i++) chain.get(i).policy().apply(buf, len);
+    }
+
+    @Override
+    public void apply(ByteBuffer data) {
+        List<Link> chain = controller.snapshot().chain();
+        if (chain.size() == 1) {
+            chain.get(0).policy().apply(data);
+            return;
+        }
+        // cada elo recebe sua visão: um elo que consome a posição não afeta o próximo
+        for (int i = 0; i < chain.size(); i++) chain.get(i).policy().apply(data.duplicate());
+    }
+
+    /** A escrita espera o elo mais restritivo */
+    @Override
+    public long pacingDelayNanos(int len) {
+        List<Link> chain = controller.snapshot().chain();
+        long wait = 0;
+        for (int i = 0; i < chain.size(); i++) wait = Math.max(wait, chain.get(i).policy().pacingDelayNanos(len));
+        return wait;
+    }
+
+    @Override
+    public boolean isEnabled() { return controller.snapshot().settings().enabled(); }
+
+    // tuning de socket e do coalescer vem do snapshot atual
+    @Override
+    public int getSendBufferSize() { return controller.snapshot().sendBufferSize(); }
+
+    @Override
+    public int getSocketBufferSize() { return controller.snapshot().socketBufferSize(); }
+
+    @Override
+    public boolean isTcpNoDelay() { return controller.snapshot().tcpNoDelay(); }
+
+    @Override
+    public String getCongestionAlgorithm() { return controller.snapshot().congestionAlgorithm(); }
+
+    @Override
+    public int getNotSentLowat() { return controller.snapshot().notSentLowat(); }
+
+    @Override
+    public long getFlushBudgetUs() { return controller.snapshot().flushBudgetUs(); }
+
+    @Override
+    public long getTuningVersion() { return controller.snapshot().version(); }
+
+    @Override
+    public void setTuningListener(Runnable listener) { controller.setListener(listener); }
+
+    public PolicyController getController() { return controller; }
+}
@@ -0,0 +1,206 @@
+package optimizations;
+
+import metrics.MetricsScheduler;
+import network.Env;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.ServiceLoader;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Arquivo de política (POLICY_CONFIG, padrão config/policy.properties) e
+ * registro dos PolicyProvider descobertos pelo ServiceLoader.
+ *
+ * Formato .properties, com as chaves de PolicySettings em três níveis:
+ *
+ *   chain=pacing                          global
+ *   listener.8000.policy=BALANCED         conexões aceitas na porta 8000
+ *   backend.tcp-server.9000.optimization=false   conexões para esse backend
+ *
+ * O backend vale sobre o listener, que vale sobre o global. O host é o
+ * configurado em TARGETS/TARGET_HOST (sem DNS reverso).
+ *
+ * Recarga: o MetricsScheduler confere a data/tamanho do arquivo a cada
+ * POLICY_RELOAD_MS (padrão 1000). Um arquivo novo é lido e validado por
+ * inteiro (chaves, valores e nomes da cadeia) antes de virar a geração
+ * atual com uma única escrita volatile; com qualquer erro a geração
+ * anterior continua valendo. Cada PolicyController percebe a geração nova
+ * na sua próxima amostra e troca settings e cadeia num snapshot só.
+ */
+public final class PolicyConfig implements MetricsScheduler.Sampled {
+
+    private static final PolicyConfig SHARED = new PolicyConfig(
+            Path.of(envOr("POLICY_CONFIG", "config/policy.properties")),
+            Env.intValue("POLICY_RELOAD_MS", 1000));
+
+    /** Uma versão do arquivo já validada; imutável exceto pelo cache de escopos */
+    private static final class Generation {
+        final long number;
+        final long modified;
+        final long size;
+        final Map<String, String> global;
+        final Map<Integer, Map<String, String>> listeners;
+        final Map<String, Map<String, String>> backends; // "host:porta"
+        final Map<PolicyScope, PolicySettings> resolved = new ConcurrentHashMap<>();
+
+        Generation(long number, long modified, long size, Map<String, String> global,
+                   Map<Integer, Map<String, String>> listeners, Map<String, Map<String, String>> backends) {
+            this.number = number;
+            this.modified = modified;
+            this.size = size;
+            this.global = global;
+            this.listeners = listeners;
+            this.backends = backends;
+        }
+    }
+
+    private final Path file;
+    private final Map<String, PolicyProvider> providers = new LinkedHashMap<>();
+    private volatile Generation current;
+
+    private PolicyConfig(Path file, int reloadMs) {
+        this.file = file;
+
+        for (PolicyProvider p : ServiceLoader.load(PolicyProvider.class)) {
+            if (providers.putIfAbsent(p.name(), p) != null) {
+                System.out.println("[POLICY] Provider duplicado ignorado: " + p.name() + " (" + p.getClass().getName() + ")");
+            }
+        }
+        System.out.println("[POLICY] Providers: " + (providers.isEmpty() ? "nenhum" : String.join(", ", providers.keySet())));
+
+        this.current = new Generation(0, 0, -1, Map.of(), Map.of(), Map.of());
+        if (Files.exists(file)) load();
+        else System.out.println("[POLICY] " + file + " não encontrado: usando os padrões (o arquivo é lido quando aparecer)");
+
+        MetricsScheduler.shared().register(this, reloadMs);
+    }
+
+    public static PolicyConfig shared() {
+        return SHARED;
+    }
+
+    /** Muda a cada arquivo novo aceito */
+    public long generation() {
+        return current.number;
+    }
+
+    public PolicyProvider provider(String name) {
+        return providers.get(name);
+    }
+
+    /** Settings efetivos do escopo na geração atual */
+    public PolicySettings settingsFor(PolicyScope scope) {
+        Generation g = current;
+        return g.resolved.computeIfAbsent(scope, s -> resolve(g, s));
+    }
+
+    private static PolicySettings resolve(Generation g, PolicyScope scope) {
+        PolicySettings s = PolicySettings.DEFAULTS.with(g.global);
+        Map<String, String> listener = g.listeners.get(scope.listenerPort());
+        if (listener != null) s = s.with(listener);
+        Map<String, String> backend = g.backends.get(scope.backendHost() + ":" + scope.backendPort());
+        if (backend != null) s = s.with(backend);
+        return s;
+    }
+
+    // -------------------- recarga --------------------
+
+    @Override
+    public boolean idle(long nowMs) {
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            Generation g = current;
+            return attrs.lastModifiedTime().toMillis() == g.modified && attrs.size() == g.size;
+        } catch (IOException e) {
+            return true; // sem arquivo: fica a geração atual
+        }
+    }
+
+    @Override
+    public void sample(long nowMs) {
+        load();
+    }
+
+    private void load() {
+        Generation prev = current;
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            Properties props = new Properties();
+            try (Reader r = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                props.load(r);
+            }
+
+            Map<String, String> global = new HashMap<>();
+            Map<Integer, Map<String, String>> listeners = new HashMap<>();
+            Map<String, Map<String, String>> backends = new HashMap<>();
+            for (String key : props.stringPropertyNames()) {
+                String value = props.getProperty(key);
+                String[] parts = key.split("\\.");
+                String setting = parts[parts.length - 1];
+
+                if (parts[0].equals("listener") && parts.length == 3) {
+                    listeners.computeIfAbsent(parsePort(key, parts[1]), p -> new HashMap<>()).put(setting, value);
+                } else if (parts[0].equals("backend") && parts.length >= 4) {
+                    // o host pode ter pontos (IP, FQDN): a porta é o penúltimo segmento
+                    String host = String.join(".", Arrays.copyOfRange(parts, 1, parts.length - 2));
+                    int port = parsePort(key, parts[parts.length - 2]);
+                    backends.computeIfAbsent(host + ":" + port, p -> new HashMap<>()).put(setting, value);
+                } else if (parts.length == 1) {
+                    global.put(setting, value);
+                } else {
+                    throw new IllegalArgumentException("chave fora do formato: " + key);
+                }
+            }
+
+            // valida tudo antes de publicar: um erro recusa o arquivo inteiro
+            validate(global);
+            for (Map<String, String> m : listeners.values()) validate(m);
+            for (Map<String, String> m : backends.values()) validate(m);
+
+            current = new Generation(prev.number + 1, attrs.lastModifiedTime().toMillis(), attrs.size(),
+                    Map.copyOf(global), Map.copyOf(listeners), Map.copyOf(backends));
+            System.out.println("[POLICY] " + file + " carregado (geração " + current.number + "): " +
+                    global.size() + " chaves globais, " + listeners.size() + " listeners, " + backends.size() + " backends");
+
+        } catch (Exception e) {
+            System.out.println("[POLICY] " + file + " inválido: " + e.getMessage() + ". Mantendo a geração " + prev.number + ".");
+            // não tenta de novo até o arquivo mudar
+            try {
+                BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+                current = new Generation(prev.number, attrs.lastModifiedTime().toMillis(), attrs.size(),
+                        prev.global, prev.listeners, prev.backends);
+            } catch (IOException ignored) {}
+        }
+    }
+
+    private void validate(Map<String, String> section) {
+        PolicySettings s = PolicySettings.DEFAULTS.with(section);
+        if (!section.containsKey("chain")) return;
+        for (String name : s.chain()) {
+            if (!providers.containsKey(name)) throw new IllegalArgumentException("elo desconhecido na cadeia: " + name);
+        }
+    }
+
+    private static int parsePort(String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("porta inválida em " + key);
+        }
+    }
+
+    private static String envOr(String name, String def) {
+        String v = System.getenv(name);
+        return v == null || v.isBlank() ? def : v.trim();
+    }
+}
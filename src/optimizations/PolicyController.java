@@ -0,0 +1,122 @@
+package optimizations;
+
+import metrics.MetricsScheduler;
+import metrics.TCPMetrics;
+import network.Env;
+
+/**
+ * Controlador periódico da política de uma conexão.
+ *
+ * Antes a heurística rodava dentro do apply() do pipe: a direção que
+ * ganhasse o CAS a cada 2,5s calculava a política, registrava a troca,
+ * imprimia o log e reconfigurava os sockets (setsockopt em quatro opções
+ * por socket) antes de encaminhar o chunk. Agora a decisão roda no
+ * MetricsScheduler compartilhado a cada POLICY_INTERVAL_MS (padrão 2500ms)
+ * e é publicada como um PolicySnapshot imutável numa referência volatile.
+ *
+ * O caminho de dados só lê snapshot(); a troca de política (métricas, log,
+ * opções de socket pelo listener) acontece inteira na thread do agendador.
+ * Uma geração nova do PolicyConfig também entra aqui: settings, cadeia e
+ * tuning do escopo da conexão trocam juntos, num único snapshot.
+ */
+public final class PolicyController implements MetricsScheduler.Sampled {
+
+    static final int INTERVAL_MS = Env.intValue("POLICY_INTERVAL_MS", 2500);
+
+    private final TCPMetrics metrics;
+    private final PolicyScope scope;
+    private final PolicyConfig config = PolicyConfig.shared();
+    private final AlgorithmSelector selector;
+
+    private volatile PolicySnapshot snapshot;
+    private volatile Runnable listener;
+
+    // só a thread do agendador lê/escreve
+    private long evaluatedBytes = 0;
+    private long generation;
+
+    public PolicyController(TCPMetrics metrics, PolicyScope scope) {
+        this.metrics = metrics;
+        this.scope = scope;
+        this.selector = new AlgorithmSelector(metrics, scope);
+
+        this.generation = config.generation();
+        PolicySettings settings = config.settingsFor(scope);
+        // os elos podem ler snapshot() ao serem criados: publica o tuning inicial antes da cadeia
+        this.snapshot = AlgorithmSelector.initial(settings);
+        this.snapshot = snapshot.withSettings(settings, PolicyChain.build(this, settings, snapshot.chain()));
+
+        MetricsScheduler.shared().register(this, INTERVAL_MS);
+    }
+
+    /** Snapshot atual; uma leitura volátil, sem lock */
+    public PolicySnapshot snapshot() {
+        return snapshot;
+    }
+
+    public TCPMetrics metrics() {
+        return metrics;
+    }
+
+    public PolicyScope scope() {
+        return scope;
+    }
+
+    /** Chamado na thread do controlador depois de cada troca de tuning */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public boolean idle(long nowMs) {
+        // sem tráfego novo nem configuração nova não há o que decidir; fechada, a próxima amostra desregistra
+        return metrics.isAlive() && metrics.getTotalBytes() == evaluatedBytes
+                && config.generation() == generation;
+    }
+
+    @Override
+    public void sample(long nowMs) {
+        if (!metrics.isAlive()) {
+            MetricsScheduler.shared().unregister(this);
+            return;
+        }
+        PolicySnapshot current = snapshot;
+        PolicySnapshot next = current;
+
+        long gen = config.generation();
+        if (gen != generation) {
+            generation = gen;
+            next = reload(current);
+        }
+
+        long bytes = metrics.getTotalBytes();
+        if (bytes != evaluatedBytes && next.settings().enabled()) {
+            evaluatedBytes = bytes;
+            next = selector.evaluate(next, nowMs);
+        }
+        if (next == current) return;
+
+        snapshot = next;
+        if (next.type() != current.type()) metrics.onPolicySwitch(next.type().name());
+        metrics.setBufferSize(next.sendBufferSize());
+
+        Runnable l = listener;
+        if (next.version() != current.version() && l != null) l.run();
+    }
+
+    /** Settings da geração nova para o escopo; refaz cadeia e tuning só se algo mudou */
+    private PolicySnapshot reload(PolicySnapshot current) {
+        PolicySettings settings = config.settingsFor(scope);
+        if (settings.equals(current.settings())) return current;
+
+        System.out.println("[POLICY] Conexão " + scope + ": configuração da geração " + generation +
+                " (cadeia " + settings.chain() + ", política " +
+                (settings.fixedPolicy() == null ? "adaptativa" : settings.fixedPolicy()) +
+                (settings.enabled() ? "" : ", otimização desligada") + ")");
+
+        PolicySnapshot next = current.withSettings(settings, PolicyChain.build(this, settings, current.chain()));
+        // os limites novos valem já nesta amostra; antes da primeira troca só o pacing inicial muda
+        if (current.version() == 0) return AlgorithmSelector.initial(settings).withSettings(settings, next.chain());
+        return selector.retune(next.type(), next);
+    }
+}
@@ -0,0 +1,22 @@
+package optimizations;
+
+/**
+ * SPI de elos de política. Implementações são descobertas pelo
+ * ServiceLoader (META-INF/services/optimizations.PolicyProvider no
+ * classpath) e referenciadas pelo nome na chave 'chain' do arquivo de
+ * política, por exemplo chain=pacing,minha-politica.
+ *
+ * create() roda uma vez por conexão (e de novo se um reload colocar o elo
+ * na cadeia), na thread do PolicyController ou de quem abriu a conexão.
+ * O elo criado roda no caminho de dados: apply() e pacingDelayNanos() devem
+ * ser baratos e thread-safe (as duas direções do relay o compartilham).
+ * Parâmetros próprios do elo podem vir de controller.snapshot().settings().
+ */
+public interface PolicyProvider {
+
+    /** Nome usado na cadeia (sem vírgulas nem espaços) */
+    String name();
+
+    /** Novo elo para a conexão do controlador */
+    TCPOpPolicy create(PolicyController controller);
+}
@@ -0,0 +1,32 @@
+package optimizations;
+
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+/**
+ * Onde a conexão entrou (porta do listener) e para qual backend foi: escolhe
+ * as seções do arquivo de política que valem para ela.
+ *
+ * @param listenerPort porta local do socket do cliente; 0 = sem escopo
+ * @param backendHost  host como configurado (hostname ou IP literal); null = sem escopo
+ */
+public record PolicyScope(int listenerPort, String backendHost, int backendPort) {
+
+    /** Só as chaves globais */
+    public static final PolicyScope NONE = new PolicyScope(0, null, 0);
+
+    /** Escopo de uma conexão já estabelecida (sem DNS reverso: usa o host como foi pedido) */
+    public static PolicyScope of(Socket client, Socket server) {
+        SocketAddress remote = server.getRemoteSocketAddress();
+        if (remote instanceof InetSocketAddress isa) {
+            return new PolicyScope(client.getLocalPort(), isa.getHostString(), isa.getPort());
+        }
+        return new PolicyScope(client.getLocalPort(), null, 0);
+    }
+
+    @Override
+    public String toString() {
+        return ":" + listenerPort + " -> " + (backendHost == null ? "?" : backendHost + ":" + backendPort);
+    }
+}
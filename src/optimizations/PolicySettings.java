@@ -0,0 +1,192 @@
+package optimizations;
+
+import buffer.BufferPool;
+import network.Env;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parâmetros da política de um escopo (global, listener ou backend), lidos
+ * do arquivo de política: liga/desliga, política fixa, adaptativa ou por
+ * bandit, cadeia de elos, limiares do AlgorithmSelector, tetos de buffer,
+ * pacing e parâmetros do BanditSelector.
+ *
+ * Imutável. with() aplica as chaves de uma seção por cima de outra:
+ * DEFAULTS <- global <- listener <- backend. Sem arquivo valem os padrões
+ * (que ainda respeitam PROXY_OPTIMIZATION, PACING_RATE_MBPS e PACING_BURST_KB).
+ *
+ * @param fixedPolicy política fixa; null = escolhida pelo AlgorithmSelector ou pelo bandit
+ * @param chain       nomes dos PolicyProvider, na ordem de aplicação
+ * @param bandit      true = BanditSelector no lugar dos limiares (policy=bandit)
+ * @param banditSeed  semente das estatísticas do destino; 0 = relógio
+ */
+public record PolicySettings(boolean enabled,
+                             OpPolicyType fixedPolicy,
+                             List<String> chain,
+                             long safeRttUs,
+                             long safeRttVarUs,
+                             long conservativeRttVarUs,
+                             long conservativeMinBps,
+                             long aggressiveMaxRttUs,
+                             long aggressiveMaxRttVarUs,
+                             long aggressiveMinBps,
+                             int aggressiveMaxBuffer,
+                             int balancedMaxBuffer,
+                             int conservativeMaxBuffer,
+                             int safeMaxBuffer,
+                             long pacingRate,
+                             long pacingBurst,
+                             boolean bandit,
+                             String banditStrategy,
+                             long banditDwellMs,
+                             double banditLatencyWeight,
+                             long banditSeed) {
+
+    public static final PolicySettings DEFAULTS = new PolicySettings(
+            !"false".equalsIgnoreCase(System.getenv("PROXY_OPTIMIZATION")),
+            null,
+            List.of("pacing"),
+            5_000_000, 3_000_000,
+            900_000, 30_000,
+            700_000, 100_000, 100_000,
+            256 * 1024, 128 * 1024, 64 * 1024, 32 * 1024,
+            Env.intValue("PACING_RATE_MBPS", 1000) * 1_000_000L / 8,
+            Env.intValue("PACING_BURST_KB", 64) * 1024L,
+            false, "thompson", 10_000, 0.3, 0);
+
+    public PolicySettings {
+        chain = List.copyOf(chain);
+    }
+
+    /**
+     * Cópia com as chaves de 'values' aplicadas. Chave desconhecida ou valor
+     * inválido lançam IllegalArgumentException: o arquivo inteiro é recusado.
+     */
+    public PolicySettings with(Map<String, String> values) {
+        boolean enabled = this.enabled;
+        OpPolicyType fixedPolicy = this.fixedPolicy;
+        List<String> chain = this.chain;
+        long safeRttUs = this.safeRttUs, safeRttVarUs = this.safeRttVarUs;
+        long conservativeRttVarUs = this.conservativeRttVarUs, conservativeMinBps = this.conservativeMinBps;
+        long aggressiveMaxRttUs = this.aggressiveMaxRttUs, aggressiveMaxRttVarUs = this.aggressiveMaxRttVarUs;
+        long aggressiveMinBps = this.aggressiveMinBps;
+        int aggressiveMaxBuffer = this.aggressiveMaxBuffer, balancedMaxBuffer = this.balancedMaxBuffer;
+        int conservativeMaxBuffer = this.conservativeMaxBuffer, safeMaxBuffer = this.safeMaxBuffer;
+        long pacingRate = this.pacingRate, pacingBurst = this.pacingBurst;
+        boolean bandit = this.bandit;
+        String banditStrategy = this.banditStrategy;
+        long banditDwellMs = this.banditDwellMs, banditSeed = this.banditSeed;
+        double banditLatencyWeight = this.banditLatencyWeight;
+
+        for (Map.Entry<String, String> e : values.entrySet()) {
+            String key = e.getKey();
+            String v = e.getValue().trim();
+            switch (key) {
+                case "optimization":              enabled = parseBoolean(key, v); break;
+                case "policy":
+                    bandit = "bandit".equalsIgnoreCase(v);
+                    fixedPolicy = bandit ? null : parsePolicy(key, v);
+                    break;
+                case "chain":                     chain = parseChain(key, v); break;
+                case "safeRttUs":                 safeRttUs = parseLong(key, v); break;
+                case "safeRttVarUs":              safeRttVarUs = parseLong(key, v); break;
+                case "conservativeRttVarUs":      conservativeRttVarUs = parseLong(key, v); break;
+                case "conservativeMinBytesPerSec": conservativeMinBps = parseLong(key, v); break;
+                case "aggressiveMaxRttUs":        aggressiveMaxRttUs = parseLong(key, v); break;
+                case "aggressiveMaxRttVarUs":     aggressiveMaxRttVarUs = parseLong(key, v); break;
+                case "aggressiveMinBytesPerSec":  aggressiveMinBps = parseLong(key, v); break;
+                case "aggressiveMaxBuffer":       aggressiveMaxBuffer = parseBuffer(key, v); break;
+                case "balancedMaxBuffer":         balancedMaxBuffer = parseBuffer(key, v); break;
+                case "conservativeMaxBuffer":     conservativeMaxBuffer = parseBuffer(key, v); break;
+                case "safeMaxBuffer":             safeMaxBuffer = parseBuffer(key, v); break;
+                case "pacingRateMbps":            pacingRate = parseLong(key, v) * 1_000_000L / 8; break;
+                case "pacingBurstKb":             pacingBurst = Math.max(1, parseLong(key, v)) * 1024L; break;
+                case "banditStrategy":            banditStrategy = parseStrategy(key, v); break;
+                case "banditDwellMs":             banditDwellMs = parseLong(key, v); break;
+                case "banditLatencyWeight":       banditLatencyWeight = parseWeight(key, v); break;
+                case "banditSeed":                banditSeed = parseLong(key, v); break;
+                default: throw new IllegalArgumentException("chave desconhecida: " + key);
+            }
+        }
+
+        return new PolicySettings(enabled, fixedPolicy, chain,
+                safeRttUs, safeRttVarUs, conservativeRttVarUs, conservativeMinBps,
+                aggressiveMaxRttUs, aggressiveMaxRttVarUs, aggressiveMinBps,
+                aggressiveMaxBuffer, balancedMaxBuffer, conservativeMaxBuffer, safeMaxBuffer,
+                pacingRate, pacingBurst,
+                bandit, banditStrategy, banditDwellMs, banditLatencyWeight, banditSeed);
+    }
+
+    /** Teto do buffer de leitura da política */
+    public int maxBuffer(OpPolicyType type) {
+        switch (type) {
+            case AGGRESSIVE:   return aggressiveMaxBuffer;
+            case BALANCED:     return balancedMaxBuffer;
+            case CONSERVATIVE: return conservativeMaxBuffer;
+            case SAFE:
+            default:           return safeMaxBuffer;
+        }
+    }
+
+    private static boolean parseBoolean(String key, String v) {
+        if ("true".equalsIgnoreCase(v)) return true;
+        if ("false".equalsIgnoreCase(v)) return false;
+        throw new IllegalArgumentException(key + "=" + v + " (esperado true|false)");
+    }
+
+    private static OpPolicyType parsePolicy(String key, String v) {
+        if ("adaptive".equalsIgnoreCase(v)) return null;
+        try {
+            return OpPolicyType.valueOf(v.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException(key + "=" + v + " (esperado adaptive|bandit|SAFE|CONSERVATIVE|BALANCED|AGGRESSIVE)");
+        }
+    }
+
+    private static String parseStrategy(String key, String v) {
+        String s = v.toLowerCase(Locale.ROOT);
+        if (s.equals("thompson") || s.equals("ucb")) return s;
+        throw new IllegalArgumentException(key + "=" + v + " (esperado thompson|ucb)");
+    }
+
+    private static double parseWeight(String key, String v) {
+        try {
+            double w = Double.parseDouble(v);
+            if (w >= 0 && w <= 1) return w;
+        } catch (NumberFormatException ignored) {}
+        throw new IllegalArgumentException(key + "=" + v + " (esperado entre 0 e 1)");
+    }
+
+    private static List<String> parseChain(String key, String v) {
+        List<String> names = new ArrayList<>();
+        for (String n : v.split(",")) {
+            n = n.trim();
+            if (n.isEmpty()) continue;
+            if (names.contains(n)) throw new IllegalArgumentException(key + ": elo repetido " + n);
+            names.add(n);
+        }
+        return names;
+    }
+
+    private static long parseLong(String key, String v) {
+        try {
+            long value = Long.parseLong(v);
+            if (value < 0) throw new NumberFormatException();
+            return value;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + "=" + v + " (esperado inteiro >= 0)");
+        }
+    }
+
+    private static int parseBuffer(String key, String v) {
+        long value = parseLong(key, v);
+        if (value < BufferPool.MIN_SIZE || value > BufferPool.MAX_SIZE) {
+            throw new IllegalArgumentException(key + "=" + v + " (esperado entre "
+                    + BufferPool.MIN_SIZE + " e " + BufferPool.MAX_SIZE + " bytes)");
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,59 @@
+package optimizations;
+
+import java.util.List;
+
+/**
+ * Decisão da política num instante: tudo o que o caminho de dados e o
+ * SocketTuner precisam saber, publicado de uma vez pelo PolicyController.
+ *
+ * Imutável: quem lê o snapshot por volatile vê um conjunto coerente de
+ * valores (nunca a taxa de uma política com o buffer de outra, nem a cadeia
+ * de uma geração do arquivo de política com os limiares de outra). Cada
+ * troca de tuning gera um snapshot novo com version + 1.
+ *
+ * @param pacingRate     bytes/s do balde de tokens; <= 0 = sem pacing
+ * @param sendBufferSize tamanho do buffer de leitura por ciclo
+ * @param flushBudgetUs  orçamento de latência do WriteCoalescer
+ * @param congestionAlgorithm TCP_CONGESTION por socket; null mantém o atual
+ * @param notSentLowat   TCP_NOTSENT_LOWAT; < 0 = padrão do kernel
+ * @param settings       parâmetros do escopo da conexão (arquivo de política)
+ * @param chain          elos instanciados para a conexão, na ordem de settings.chain()
+ */
+public record PolicySnapshot(OpPolicyType type,
+                             long version,
+                             long pacingRate,
+                             long pacingBurst,
+                             int sendBufferSize,
+                             boolean tcpNoDelay,
+                             long flushBudgetUs,
+                             long ackDelayUs,
+                             String congestionAlgorithm,
+                             int notSentLowat,
+                             PolicySettings settings,
+                             List<PolicyChain.Link> chain) {
+
+    // SO_SNDBUF/SO_RCVBUF = N chunks do buffer de leitura, para manter o pipeline cheio
+    private static final int SOCKET_BUFFER_CHUNKS = 4;
+
+    public int socketBufferSize() {
+        return sendBufferSize * SOCKET_BUFFER_CHUNKS;
+    }
+
+    /** Mesmo tuning (e versão) com outra configuração; o tuning novo vem na próxima avaliação */
+    public PolicySnapshot withSettings(PolicySettings settings, List<PolicyChain.Link> chain) {
+        return new PolicySnapshot(type, version, pacingRate, pacingBurst, sendBufferSize, tcpNoDelay,
+                flushBudgetUs, ackDelayUs, congestionAlgorithm, notSentLowat, settings, chain);
+    }
+
+    @Override
+    public String toString() {
+        return "Policy=" + type +
+                " TCP=" + congestionAlgorithm +
+                " pacing=" + (pacingRate <= 0 ? "off" : String.format("%.1fMbit/s", pacingRate * 8 / 1e6)) +
+                " ack=" + ackDelayUs + "us" +
+                " buf=" + sendBufferSize +
+                " flush=" + flushBudgetUs + "us" +
+                " nodelay=" + tcpNoDelay +
+                " lowat=" + (notSentLowat < 0 ? "off" : notSentLowat);
+    }
+}
@@ -2,55 +2,88 @@ package optimizations;
 
 import metrics.TCPMetrics;
 
+import java.nio.ByteBuffer;
+
 public interface TCPOpPolicy {
     void apply(byte[] buf, int len);
 
+    /**
+     * Versão para o caminho com ByteBuffer direto (ChannelPipe). 'data' é uma
+     * visão somente leitura de [position, limit). O default copia para o heap
+     * para manter compatibilidade; políticas que só usam o tamanho devem sobrescrever.
+     */
+    default void apply(ByteBuffer data) {
+        byte[] copy = new byte[data.remaining()];
+        data.duplicate().get(copy);
+        apply(copy, copy.length);
+    }
+
     /** Novo método para retornar o tamanho do buffer atual */
     default int getSendBufferSize() {
         return 8192; // valor default se não implementado
     }
 
+    /** SO_SNDBUF/SO_RCVBUF desejado nos sockets; <= 0 mantém o valor do sistema */
+    default int getSocketBufferSize() {
+        return -1;
+    }
+
+    /** TCP_NODELAY desejado nos sockets */
+    default boolean isTcpNoDelay() {
+        return false;
+    }
+
+    /** Algoritmo de congestionamento (TCP_CONGESTION) para os sockets da conexão; null mantém o atual */
+    default String getCongestionAlgorithm() {
+        return null;
+    }
+
+    /** TCP_NOTSENT_LOWAT desejado; < 0 = padrão do kernel (sem limite) */
+    default int getNotSentLowat() {
+        return -1;
+    }
+
+    /**
+     * Reserva 'len' bytes no orçamento de pacing da conexão e retorna por
+     * quantos nanos a escrita deve ser adiada (0 = pode escrever já). A
+     * política não dorme: o pipe adia a escrita pelo TimerWheel.
+     */
+    default long pacingDelayNanos(int len) {
+        return 0;
+    }
+
+    /** Orçamento de latência do WriteCoalescer em µs; < 0 mantém o padrão (COALESCE_BUDGET_US) */
+    default long getFlushBudgetUs() {
+        return -1;
+    }
+
+    /**
+     * Incrementado a cada mudança de tuning. O SocketTuner compara com o
+     * último valor aplicado para reconfigurar os sockets da conexão em andamento.
+     */
+    default long getTuningVersion() {
+        return 0;
+    }
+
+    /**
+     * Chamado fora do caminho de dados a cada mudança de getTuningVersion()
+     * (o SocketTuner se registra aqui). Políticas sem tuning nunca chamam.
+     */
+    default void setTuningListener(Runnable listener) {
+    }
+
+    /** false = os pipes encaminham sem passar pela política (optimization=false no arquivo de política) */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    /** Política sem escopo: só as chaves globais do arquivo de política */
     static TCPOpPolicy defaultPolicies(TCPMetrics m) {
-        return new TCPOpPolicy() {
-
-            private final DelayPolicy pacing = new DelayPolicy(m);
-            private final DelayedAckPolicy delayed = new DelayedAckPolicy(m);
-            private final AlgorithmSelector selector = new AlgorithmSelector(m);
-
-            @Override
-            public void apply(byte[] buf, int len) {
-
-                // primeiro atualiza heurística
-                selector.apply(buf, len);
-
-                // escolhe política conforme heurística
-                switch (selector.getCurrentPolicy()) {
-
-                    case SAFE:
-                        delayed.apply(buf, len); // min interferência
-                        break;
-
-                    case CONSERVATIVE:
-                        delayed.apply(buf, len);
-                        pacing.apply(buf, len); // leve pacing
-                        break;
-
-                    case BALANCED:
-                        pacing.apply(buf, len);
-                        delayed.apply(buf, len);
-                        break;
-
-                    case AGGRESSIVE:
-                        pacing.apply(buf, len); // mais pacing, sem delay ACK
-                        break;
-                }
-            }
-
-            @Override
-            public int getSendBufferSize() {
-                // delega para o AlgorithmSelector
-                return selector.getSendBufferSize();
-            }
-        };
+        return forConnection(m, PolicyScope.NONE);
+    }
+
+    /** Cadeia, limiares e tuning do arquivo de política para a conexão, recarregados em andamento */
+    static TCPOpPolicy forConnection(TCPMetrics m, PolicyScope scope) {
+        return new PolicyChain(new PolicyController(m, scope));
     }
 }
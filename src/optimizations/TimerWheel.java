@@ -0,0 +1,178 @@
+package optimizations;
+
+import network.Env;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Roda de timers (hashed timing wheel) compartilhada pelo pacing de todas
+ * as conexões.
+ *
+ * Uma única thread (Pacing-Wheel) avança um tick a cada PACING_TICK_US
+ * (padrão 1000µs). Agendar é O(1) para quem chama: o timer entra numa fila
+ * MPSC e a thread da roda o coloca no slot (tick % slots) com o número de
+ * voltas que faltam. Sem timers pendentes a thread fica parada até o
+ * próximo schedule().
+ *
+ * As tarefas rodam na thread da roda e devem ser curtas (unpark de um
+ * pipe, execute() de um NioEventLoop).
+ */
+public final class TimerWheel {
+
+    private static final int SLOTS = 512; // potência de 2
+    private static final TimerWheel SHARED = new TimerWheel(Env.intValue("PACING_TICK_US", 1000));
+
+    /** Timer agendado; cancel() só marca, a roda descarta ao passar pelo slot */
+    public static final class Timeout {
+        final long deadline;
+        final Runnable task;
+        long rounds;
+        Timeout next;
+        volatile boolean cancelled;
+
+        Timeout(long deadline, Runnable task) {
+            this.deadline = deadline;
+            this.task = task;
+        }
+
+        public void cancel() { cancelled = true; }
+    }
+
+    private final long tickNanos;
+    private final Timeout[] slots = new Timeout[SLOTS]; // só acessado pela thread da roda
+    private final ConcurrentLinkedQueue<Timeout> incoming = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean sleeping = false;
+
+    private final long start = System.nanoTime();
+    private long tick = 0;
+    private int pending = 0;
+
+    // estatísticas (escritas só pela thread da roda)
+    private volatile long fired = 0;
+    private volatile long maxLateNanos = 0;
+
+    TimerWheel(int tickMicros) {
+        this.tickNanos = Math.max(100, tickMicros) * 1000L;
+        this.thread = new Thread(this::run, "Pacing-Wheel");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public static TimerWheel shared() {
+        return SHARED;
+    }
+
+    /** Agenda 'task' para daqui a 'delayNanos' (arredondado para cima no tick) */
+    public Timeout schedule(long delayNanos, Runnable task) {
+        Timeout t = new Timeout(System.nanoTime() + Math.max(0, delayNanos), task);
+        incoming.add(t);
+        if (sleeping) LockSupport.unpark(thread);
+        return t;
+    }
+
+    /**
+     * Bloqueia a thread atual até o disparo do timer. Para pipes bloqueantes:
+     * uma thread virtual libera o carrier enquanto espera.
+     */
+    public void await(long delayNanos) throws InterruptedException {
+        Thread waiter = Thread.currentThread();
+        AtomicBoolean done = new AtomicBoolean();
+        Timeout t = schedule(delayNanos, () -> {
+            done.set(true);
+            LockSupport.unpark(waiter);
+        });
+        while (!done.get()) {
+            LockSupport.park(this);
+            if (Thread.interrupted()) {
+                t.cancel();
+                throw new InterruptedException();
+            }
+        }
+    }
+
+    public long getTickMicros() { return tickNanos / 1000; }
+    public long getFired() { return fired; }
+    public long getMaxLateMicros() { return maxLateNanos / 1000; }
+
+    // -------------------- thread da roda --------------------
+
+    private void run() {
+        while (true) {
+            if (pending == 0 && incoming.isEmpty()) idle();
+
+            long tickEnd = start + (tick + 1) * tickNanos;
+            long wait;
+            while ((wait = tickEnd - System.nanoTime()) > 0) LockSupport.parkNanos(this, wait);
+
+            transferIncoming();
+            expire((int) (tick & (SLOTS - 1)));
+            tick++;
+        }
+    }
+
+    /** Nada agendado: dorme até um schedule() e retoma a contagem de ticks do relógio atual */
+    private void idle() {
+        sleeping = true;
+        while (incoming.isEmpty()) LockSupport.park(this);
+        sleeping = false;
+        tick = Math.max(tick, (System.nanoTime() - start) / tickNanos);
+    }
+
+    private void transferIncoming() {
+        Timeout t;
+        while ((t = incoming.poll()) != null) {
+            if (t.cancelled) continue;
+            // último tick cujo fim ainda é anterior ao deadline; já vencidos vão para o tick atual
+            long target = Math.max(tick, (t.deadline - start + tickNanos - 1) / tickNanos - 1);
+            long ticks = target - tick;
+            t.rounds = ticks / SLOTS;
+            int idx = (int) (target & (SLOTS - 1));
+            t.next = slots[idx];
+            slots[idx] = t;
+            pending++;
+        }
+    }
+
+    private void expire(int idx) {
+        Timeout prev = null;
+        Timeout t = slots[idx];
+        long now = System.nanoTime();
+        while (t != null) {
+            Timeout next = t.next;
+            boolean remove = t.cancelled;
+            if (!remove) {
+                if (t.rounds > 0) {
+                    t.rounds--;
+                } else {
+                    remove = true;
+                    long late = now - t.deadline;
+                    if (late > maxLateNanos) maxLateNanos = late;
+                    fired++;
+                    try {
+                        t.task.run();
+                    } catch (Throwable e) {
+                        System.err.println("[PACING] erro em timer: " + e);
+                    }
+                }
+            }
+            if (remove) {
+                if (prev == null) slots[idx] = next;
+                else prev.next = next;
+                t.next = null;
+                pending--;
+            } else {
+                prev = t;
+            }
+            t = next;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TimerWheel{tick=" + getTickMicros() + "µs slots=" + SLOTS +
+                " disparos=" + fired + " atraso max=" + getMaxLateMicros() + "µs}";
+    }
+}
@@ -0,0 +1,72 @@
+package optimizations;
+
+/**
+ * Balde de tokens de uma conexão: 'rate' bytes/s com rajada de até
+ * 'burst' bytes.
+ *
+ * reserve() nunca espera: desconta os bytes (o saldo pode ficar negativo)
+ * e devolve quanto tempo falta para a dívida ser paga. Quem chama adia a
+ * escrita por esse tempo; como a dívida fica registrada, o próximo
+ * reserve() já considera o atraso real do timer e a taxa média não deriva.
+ *
+ * As duas direções do relay dividem o balde da conexão; o lock é curto e
+ * quase nunca disputado.
+ */
+public final class TokenBucket {
+
+    private long rate;   // bytes/s; <= 0 = ilimitado
+    private long burst;  // bytes
+    private double tokens;
+    private long last = System.nanoTime();
+
+    private long deferred = 0;
+    private long deferredNanos = 0;
+
+    public TokenBucket(long rate, long burst) {
+        setRate(rate, burst);
+        this.tokens = this.burst;
+    }
+
+    /** Troca taxa/rajada mantendo o saldo (limitado à nova rajada) */
+    public synchronized void setRate(long rate, long burst) {
+        refill(System.nanoTime());
+        this.rate = rate;
+        this.burst = Math.max(1, burst);
+        if (tokens > this.burst) tokens = this.burst;
+    }
+
+    /** Reserva 'len' bytes; retorna os nanos até poder escrever (0 = já) */
+    public synchronized long reserve(int len, long now) {
+        if (rate <= 0) return 0;
+        refill(now);
+        tokens -= len;
+        if (tokens >= 0) return 0;
+
+        long wait = (long) (-tokens * 1_000_000_000d / rate);
+        deferred++;
+        deferredNanos += wait;
+        return wait;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - last;
+        last = now;
+        if (elapsed <= 0 || rate <= 0) {
+            if (rate <= 0) tokens = burst;
+            return;
+        }
+        tokens = Math.min(burst, tokens + elapsed * (double) rate / 1_000_000_000d);
+    }
+
+    public synchronized long getRate() { return rate; }
+    public synchronized long getBurst() { return burst; }
+    public synchronized long getDeferred() { return deferred; }
+    public synchronized long getDeferredNanos() { return deferredNanos; }
+
+    @Override
+    public synchronized String toString() {
+        return "TokenBucket{" + (rate <= 0 ? "ilimitado" : rate / 1024 + "KB/s") +
+                " rajada=" + burst / 1024 + "KB adiadas=" + deferred +
+                " espera=" + deferredNanos / 1_000_000 + "ms}";
+    }
+}
@@ -0,0 +1,133 @@
+package proxy;
+
+import network.Env;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * N threads de accept na mesma porta.
+ *
+ * Com SO_REUSEPORT (Linux) cada thread tem seu próprio ServerSocketChannel e o
+ * kernel distribui as conexões entre eles; sem suporte, todas compartilham um
+ * único canal. O handler recebe o cliente e não deve bloquear: qualquer
+ * trabalho lento (ex.: connect upstream) vai para outra thread.
+ *
+ * Configuração via PROXY_ACCEPTORS (padrão 1 por núcleo, até 4) e PROXY_BACKLOG (padrão 1024).
+ */
+public class AcceptorGroup {
+
+    // accept que falha (ex.: EMFILE/ENFILE) tende a falhar de novo na hora: espera e loga no máximo 1x/s
+    private static final long ACCEPT_BACKOFF_MS = 50;
+    private static final long ERROR_LOG_INTERVAL_MS = 1000;
+
+    private final int port;
+    private final int acceptors;
+    private final int backlog;
+
+    public AcceptorGroup(int port, int acceptors, int backlog) {
+        this.port = port;
+        this.acceptors = Math.max(1, acceptors);
+        this.backlog = backlog;
+    }
+
+    public static AcceptorGroup fromEnv(int port) {
+        int defaultAcceptors = Math.min(4, Runtime.getRuntime().availableProcessors());
+        return new AcceptorGroup(port,
+                Env.intValue("PROXY_ACCEPTORS", defaultAcceptors),
+                Env.intValue("PROXY_BACKLOG", 1024));
+    }
+
+    public int getAcceptors() { return acceptors; }
+
+    /** Abre os canais e bloqueia até todas as threads de accept terminarem */
+    public void run(String tag, Consumer<SocketChannel> handler) throws IOException, InterruptedException {
+        List<ServerSocketChannel> channels = open();
+        List<Thread> threads = new ArrayList<>();
+
+        try {
+            System.out.println("[" + tag + "] Escutando na porta " + port + " (" + acceptors + " acceptors, "
+                    + (channels.size() > 1 ? "SO_REUSEPORT" : "canal compartilhado") + ", backlog " + backlog + ")");
+
+            for (int i = 0; i < acceptors; i++) {
+                ServerSocketChannel ss = channels.get(i % channels.size());
+                Thread t = new Thread(() -> acceptLoop(tag, ss, handler), "Acceptor-" + port + "-" + i);
+                t.start();
+                threads.add(t);
+            }
+            for (Thread t : threads) t.join();
+
+        } finally {
+            for (ServerSocketChannel ss : channels) {
+                try { ss.close(); } catch (IOException ignored) {}
+            }
+        }
+    }
+
+    private List<ServerSocketChannel> open() throws IOException {
+        List<ServerSocketChannel> channels = new ArrayList<>();
+        ServerSocketChannel first = ServerSocketChannel.open();
+        boolean reusePort = acceptors > 1
+                && first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT);
+
+        try {
+            bind(first, reusePort);
+            channels.add(first);
+            for (int i = 1; reusePort && i < acceptors; i++) {
+                ServerSocketChannel ss = ServerSocketChannel.open();
+                bind(ss, true);
+                channels.add(ss);
+            }
+        } catch (IOException e) {
+            for (ServerSocketChannel ss : channels) {
+                try { ss.close(); } catch (IOException ignored) {}
+            }
+            first.close();
+            throw e;
+        }
+        return channels;
+    }
+
+    private void bind(ServerSocketChannel ss, boolean reusePort) throws IOException {
+        ss.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        if (reusePort) ss.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+        ss.bind(new InetSocketAddress(port), backlog);
+    }
+
+    private void acceptLoop(String tag, ServerSocketChannel ss, Consumer<SocketChannel> handler) {
+        long lastErrorLog = 0;
+        long suppressed = 0;
+
+        while (ss.isOpen()) {
+            try {
+                SocketChannel client = ss.accept();
+                handler.accept(client);
+            } catch (IOException e) {
+                if (!ss.isOpen()) break;
+
+                long now = System.currentTimeMillis();
+                if (now - lastErrorLog >= ERROR_LOG_INTERVAL_MS) {
+                    System.out.println("[" + tag + "] Erro no accept: " + e.getMessage()
+                            + (suppressed > 0 ? " (+" + suppressed + " omitidos)" : ""));
+                    lastErrorLog = now;
+                    suppressed = 0;
+                } else {
+                    suppressed++;
+                }
+
+                try {
+                    Thread.sleep(ACCEPT_BACKOFF_MS);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+}
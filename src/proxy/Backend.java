@@ -0,0 +1,111 @@
+package proxy;
+
+import metrics.TCPMetrics;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Um backend do proxy: destino, pool de conexões upstream e estatísticas
+ * usadas pelas estratégias de balanceamento.
+ *
+ * RTT e throughput são médias móveis exponenciais (EWMA) alimentadas pelo
+ * TCPMetrics das conexões: as ativas são consultadas na hora da escolha e as
+ * encerradas deixam sua última amostra na média. Médias sem atualização há
+ * mais de STALE_MS são descartadas, para que um backend que deixou de receber
+ * conexões volte a ser medido.
+ */
+public class Backend {
+
+    private static final double ALPHA = 0.3;
+    private static final long STALE_MS = 10_000;
+
+    private final String host;
+    private final int port;
+    private final UpstreamPool pool;
+
+    private final AtomicInteger active = new AtomicInteger();
+    private final AtomicLong totalConnections = new AtomicLong();
+    private final Set<TCPMetrics> live = ConcurrentHashMap.newKeySet();
+
+    private volatile double ewmaRttUs = -1;
+    private volatile double ewmaThroughputBps = -1;
+    private volatile long lastSampleAt = 0;
+
+    public Backend(String host, int port) {
+        this.host = host;
+        this.port = port;
+        this.pool = UpstreamPool.forTarget(host, port);
+    }
+
+    public String getHost() { return host; }
+    public int getPort() { return port; }
+    public UpstreamPool getPool() { return pool; }
+    public int getActiveConnections() { return active.get(); }
+    public long getTotalConnections() { return totalConnections.get(); }
+
+    /** Chamado quando uma conexão é atribuída a este backend */
+    public void connectionOpened() {
+        active.incrementAndGet();
+        totalConnections.incrementAndGet();
+    }
+
+    /** Passa a acompanhar as métricas de uma conexão ativa */
+    public void track(TCPMetrics metrics) {
+        if (metrics != null) live.add(metrics);
+    }
+
+    /** Chamado quando a conexão termina; incorpora as últimas amostras nas médias */
+    public void connectionClosed(TCPMetrics metrics) {
+        active.decrementAndGet();
+        if (metrics == null) return;
+        live.remove(metrics);
+        observe(metrics);
+    }
+
+    private void observe(TCPMetrics metrics) {
+        long rtt = metrics.getLastRtt();
+        if (rtt > 0) ewmaRttUs = ewma(ewmaRttUs, rtt);
+        long thr = metrics.getAverageThroughputBps();
+        if (thr > 0) ewmaThroughputBps = ewma(ewmaThroughputBps, thr);
+        lastSampleAt = System.currentTimeMillis();
+    }
+
+    private boolean stale() {
+        return live.isEmpty() && System.currentTimeMillis() - lastSampleAt > STALE_MS;
+    }
+
+    private static double ewma(double current, double sample) {
+        return current < 0 ? sample : (1 - ALPHA) * current + ALPHA * sample;
+    }
+
+    /** RTT estimado em µs (-1 se ainda não há amostras) */
+    public double getRttUs() {
+        if (stale()) return -1;
+        double rtt = ewmaRttUs;
+        for (TCPMetrics m : live) {
+            long sample = m.getLastRtt();
+            if (sample > 0) rtt = ewma(rtt, sample);
+        }
+        return rtt;
+    }
+
+    /** Throughput médio por conexão em B/s (-1 se ainda não há amostras) */
+    public double getThroughputBps() {
+        if (stale()) return -1;
+        double thr = ewmaThroughputBps;
+        for (TCPMetrics m : live) {
+            long sample = m.getAverageThroughputBps();
+            if (sample > 0) thr = ewma(thr, sample);
+        }
+        return thr;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s:%d ativos=%d total=%d rtt=%.0fµs thr=%.0fB/s",
+                host, port, active.get(), totalConnections.get(), getRttUs(), getThroughputBps());
+    }
+}
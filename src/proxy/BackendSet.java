@@ -0,0 +1,77 @@
+package proxy;
+
+import network.Env;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Conjunto de backends do proxy e a estratégia que escolhe um por conexão.
+ *
+ * Do ambiente: TARGETS=host:porta,host:porta,... ou TARGET_HOST (aceita
+ * vários hosts separados por vírgula) + TARGET_PORT; estratégia em
+ * BALANCE_STRATEGY (round-robin | least-connections | latency).
+ */
+public class BackendSet {
+
+    private final List<Backend> backends;
+    private final BalanceStrategy strategy;
+
+    public BackendSet(List<Backend> backends, BalanceStrategy strategy) {
+        if (backends.isEmpty()) throw new IllegalArgumentException("nenhum backend configurado");
+        this.backends = Collections.unmodifiableList(new ArrayList<>(backends));
+        this.strategy = strategy;
+    }
+
+    public static BackendSet single(String host, int port) {
+        return new BackendSet(List.of(new Backend(host, port)), new RoundRobinStrategy());
+    }
+
+    /** Lê os backends do ambiente; 'defaultHost'/'defaultPort' valem quando nada foi definido */
+    public static BackendSet fromEnv(String defaultHost, int defaultPort) {
+        List<Backend> list = new ArrayList<>();
+
+        String targets = System.getenv("TARGETS");
+        if (targets != null && !targets.isBlank()) {
+            for (String t : targets.split(",")) {
+                t = t.trim();
+                if (t.isEmpty()) continue;
+                int idx = t.lastIndexOf(':');
+                if (idx > 0) list.add(new Backend(t.substring(0, idx), Integer.parseInt(t.substring(idx + 1))));
+                else list.add(new Backend(t, defaultPort));
+            }
+        } else {
+            String hosts = System.getenv("TARGET_HOST");
+            int port = Env.intValue("TARGET_PORT", defaultPort);
+            if (hosts == null || hosts.isBlank()) hosts = defaultHost;
+            for (String h : hosts.split(",")) {
+                if (!h.isBlank()) list.add(new Backend(h.trim(), port));
+            }
+        }
+
+        return new BackendSet(list, BalanceStrategy.fromName(System.getenv("BALANCE_STRATEGY")));
+    }
+
+    public Backend choose() {
+        return strategy.pick(backends);
+    }
+
+    public List<Backend> getBackends() {
+        return backends;
+    }
+
+    public BalanceStrategy getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(strategy.getClass().getSimpleName()).append(" [");
+        for (int i = 0; i < backends.size(); i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(backends.get(i).getHost()).append(':').append(backends.get(i).getPort());
+        }
+        return sb.append(']').toString();
+    }
+}
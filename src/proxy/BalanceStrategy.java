@@ -0,0 +1,28 @@
+package proxy;
+
+import java.util.List;
+
+/** Escolhe o backend de cada nova conexão */
+public interface BalanceStrategy {
+
+    Backend pick(List<Backend> backends);
+
+    /** round-robin | least-connections | latency (padrão round-robin) */
+    static BalanceStrategy fromName(String name) {
+        if (name == null || name.isBlank()) return new RoundRobinStrategy();
+        switch (name.trim().toLowerCase()) {
+            case "least-connections":
+            case "least_connections":
+                return new LeastConnectionsStrategy();
+            case "latency":
+            case "latency-aware":
+                return new LatencyAwareStrategy();
+            case "round-robin":
+            case "round_robin":
+                return new RoundRobinStrategy();
+            default:
+                System.out.println("[LB] Estratégia desconhecida: " + name + ". Usando round-robin.");
+                return new RoundRobinStrategy();
+        }
+    }
+}
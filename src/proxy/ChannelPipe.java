@@ -0,0 +1,106 @@
+package proxy;
+
+import buffer.BufferPool;
+import buffer.PooledReader;
+import metrics.Direction;
+import metrics.MetricsRegistry;
+import metrics.PCAPWriter;
+import metrics.RelayHistogram;
+import metrics.TCPMetrics;
+import optimizations.TCPOpPolicy;
+import optimizations.TimerWheel;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Versão do ProxyPipe sobre SocketChannel e ByteBuffer direto.
+ *
+ * Sem captura e sem otimizações o payload vai do socket de entrada para o
+ * de saída sem nunca ser copiado para o heap. Com elas ativas, pcap e
+ * política leem a mesma fatia do buffer (somente leitura), sem cópias extras.
+ */
+public class ChannelPipe implements Runnable {
+
+    private final SocketChannel in;
+    private final SocketChannel out;
+    private final Direction direction;
+    private final String name;
+    private final TCPMetrics metrics;
+    private final TCPOpPolicy policy;
+
+    private final boolean enableCapture;
+
+    private final PCAPWriter pcap;
+
+    public ChannelPipe(SocketChannel in, SocketChannel out, Direction direction,
+                       TCPMetrics metrics, TCPOpPolicy policy,
+                       boolean enableCapture) throws Exception {
+
+        this.in = in;
+        this.out = out;
+        this.direction = direction;
+        this.name = direction.label();
+        this.metrics = metrics;
+        this.policy = policy;
+        this.enableCapture = enableCapture;
+
+        if (enableCapture) {
+            this.pcap = new PCAPWriter(metrics.getCaptureFlow(), direction);
+        } else {
+            this.pcap = null;
+        }
+    }
+
+    @Override
+    public void run() {
+        MetricsRegistry.global().pipeStarted();
+        try (PooledReader reader = new PooledReader(in, BufferPool.DIRECT)) {
+            ByteBuffer buffer;
+
+            // buffer direto emprestado por ciclo; devolvido quando a entrada fica ociosa
+            while ((buffer = reader.next(policy.getSendBufferSize())) != null) {
+                long readAt = System.nanoTime();
+                metrics.onRead(direction, readAt);
+                int read = buffer.remaining();
+                // arquivo de política pode ligar/desligar com a conexão em andamento
+                boolean enableOptimization = policy.isEnabled();
+
+                if (enableCapture || enableOptimization) {
+                    // mesma região de memória, apenas leitura
+                    ByteBuffer view = buffer.asReadOnlyBuffer();
+                    if (enableCapture) pcap.writePacket(view.duplicate());
+                    if (enableOptimization) policy.apply(view);
+                }
+
+                // acima do orçamento do pacing a escrita espera a roda (sem dormir a política)
+                if (enableOptimization) {
+                    long wait = policy.pacingDelayNanos(read);
+                    if (wait > 0) TimerWheel.shared().await(wait);
+                }
+
+                long writeStart = System.nanoTime();
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                long written = System.nanoTime();
+                metrics.onWritten(direction, written);
+                metrics.record(RelayHistogram.WRITE_BLOCK_US, (written - writeStart) / 1000);
+                metrics.recordForward(readAt);
+
+                metrics.recordBytes(direction, read);
+                reader.recycle();
+            }
+
+            // sinaliza fim do fluxo sem fechar a outra direção
+            try { out.shutdownOutput(); } catch (Exception ignored) {}
+
+        } catch (Exception e) {
+            System.out.println("[PIPE] " + name + " encerrado. (" + e.getMessage() + ")");
+        } finally {
+            MetricsRegistry.global().pipeFinished();
+            metrics.close();
+            if (pcap != null) pcap.close();
+        }
+    }
+}
@@ -1,53 +1,65 @@
 package proxy;
 
+import buffer.BufferPool;
+import buffer.PooledReader;
+import buffer.WriteCoalescer;
 import metrics.TCPMetrics;
 import optimizations.TCPOpPolicy;
+import metrics.Direction;
+import metrics.MetricsRegistry;
 import metrics.PCAPWriter;
 
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.time.Instant;
+import java.nio.ByteBuffer;
 
 public class EchoPipe implements Runnable {
 
     private final Socket client;
     private final TCPMetrics metrics;
-    private final Object lock;
     private final PCAPWriter pcap;
 
-    public EchoPipe(Socket client, TCPMetrics metrics, Object lock) throws Exception {
+    public EchoPipe(Socket client, TCPMetrics metrics) throws Exception {
         this.client = client;
         this.metrics = metrics;
-        this.lock = lock;
 
-        String fileName = "pcap/echo_" + Instant.now().toEpochMilli() + ".pcap";
-        this.pcap = new PCAPWriter(fileName);
+        this.pcap = new PCAPWriter(metrics.getCaptureFlow(), Direction.ECHO);
     }
 
     @Override
     public void run() {
+        MetricsRegistry.global().pipeStarted();
         try (InputStream in = client.getInputStream();
-             OutputStream out = client.getOutputStream()) {
+             OutputStream out = client.getOutputStream();
+             PooledReader reader = new PooledReader(in, BufferPool.HEAP);
+             WriteCoalescer writer = new WriteCoalescer(out)) {
 
-            byte[] buffer = new byte[8192];
-            int read;
+            writer.setFlushObserver(metrics::recordFlush);
 
-            while ((read = in.read(buffer)) != -1) {
-                synchronized (lock) {
-                    // grava pcap
-                    pcap.writePacket(buffer, read);
+            ByteBuffer chunk;
 
-                    // reenvia exatamente o que recebeu
-                    out.write(buffer, 0, read);
-                    out.flush();
-                }
-                metrics.recordBytes("ECHO", read);
+            while ((chunk = reader.next(8192)) != null) {
+                byte[] buffer = chunk.array();
+                int read = chunk.remaining();
+
+                // grava pcap
+                pcap.writePacket(buffer, read);
+
+                // reenvia exatamente o que recebeu
+                boolean idle = reader.idle();
+                writer.write(buffer, 0, read, idle);
+                metrics.recordBytes(Direction.ECHO, read);
+                reader.recycle(idle);
             }
 
+            writer.flush();
+            System.out.println("[COALESCE] ECHO " + writer);
+
         } catch (Exception e) {
             System.out.println("[ECHO] Cliente desconectado: " + e.getMessage());
         } finally {
+            MetricsRegistry.global().pipeFinished();
             metrics.close();
             try { pcap.close(); } catch (Exception ignored) {}
         }
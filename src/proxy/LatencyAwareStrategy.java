@@ -0,0 +1,65 @@
+package proxy;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Escolhe o backend de menor custo estimado:
+ *
+ *   custo = RTT_ewma * (conexões ativas + 1) / (1 + throughput_ewma / 1 MB/s)
+ *
+ * Réplicas lentas (RTT alto ou throughput baixo) recebem menos conexões
+ * automaticamente. Backend ainda sem amostra de RTT ou de throughput usa a
+ * mediana dos backends já medidos para o que falta: o custo dele cresce com
+ * as conexões ativas como o dos outros, em vez de ficar zerado e receber
+ * todas as conexões novas até a primeira amostra. Sem nenhuma amostra o
+ * custo é só (ativas + 1), ou seja, menos conexões.
+ */
+public class LatencyAwareStrategy implements BalanceStrategy {
+
+    private static final double THROUGHPUT_REF_BPS = 1_000_000;
+
+    private final AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public Backend pick(List<Backend> backends) {
+        int n = backends.size();
+        double[] rtts = new double[n];
+        double[] thrs = new double[n];
+        for (int i = 0; i < n; i++) {
+            rtts[i] = backends.get(i).getRttUs();
+            thrs[i] = backends.get(i).getThroughputBps();
+        }
+        double refRtt = median(rtts, 1);
+        double refThr = median(thrs, 0);
+
+        int start = Math.floorMod(offset.getAndIncrement(), n);
+        Backend best = null;
+        double bestCost = Double.MAX_VALUE;
+
+        for (int i = 0; i < n; i++) {
+            int idx = (start + i) % n;
+            double cost = cost(backends.get(idx), rtts[idx], thrs[idx], refRtt, refThr);
+            if (cost < bestCost) {
+                best = backends.get(idx);
+                bestCost = cost;
+            }
+        }
+        return best;
+    }
+
+    static double cost(Backend b, double rtt, double thr, double refRtt, double refThr) {
+        if (rtt < 0) rtt = refRtt;
+        if (thr < 0) thr = refThr;
+        return rtt * (b.getActiveConnections() + 1) / (1 + thr / THROUGHPUT_REF_BPS);
+    }
+
+    /** Mediana dos valores amostrados (>= 0); 'fallback' se nenhum backend tem amostra */
+    private static double median(double[] values, double fallback) {
+        double[] sampled = Arrays.stream(values).filter(v -> v >= 0).sorted().toArray();
+        if (sampled.length == 0) return fallback;
+        int mid = sampled.length / 2;
+        return sampled.length % 2 == 1 ? sampled[mid] : (sampled[mid - 1] + sampled[mid]) / 2;
+    }
+}
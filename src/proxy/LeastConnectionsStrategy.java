@@ -0,0 +1,22 @@
+package proxy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class LeastConnectionsStrategy implements BalanceStrategy {
+
+    // desempate em rodízio para não concentrar tudo no primeiro backend ocioso
+    private final AtomicInteger offset = new AtomicInteger();
+
+    @Override
+    public Backend pick(List<Backend> backends) {
+        int n = backends.size();
+        int start = Math.floorMod(offset.getAndIncrement(), n);
+        Backend best = null;
+        for (int i = 0; i < n; i++) {
+            Backend b = backends.get((start + i) % n);
+            if (best == null || b.getActiveConnections() < best.getActiveConnections()) best = b;
+        }
+        return best;
+    }
+}
@@ -0,0 +1,276 @@
+package proxy;
+
+import buffer.BufferPool;
+import metrics.Direction;
+import metrics.MetricsRegistry;
+import metrics.PCAPWriter;
+import metrics.TCPMetrics;
+import optimizations.PolicyScope;
+import optimizations.TCPOpPolicy;
+import optimizations.TimerWheel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Uma conexão cliente <-> servidor no modo NIO. Confinada à thread do
+ * NioEventLoop que a criou, portanto não usa locks.
+ *
+ * Cada direção empresta um buffer direto do BufferPool quando a origem fica
+ * legível e o devolve assim que tudo foi escrito; enquanto há bytes
+ * pendentes a leitura da origem é suspensa (backpressure pelo Selector).
+ * Acima do orçamento do pacing a escrita é adiada pelo TimerWheel, que
+ * devolve a retomada para a thread do loop.
+ */
+public class NioConnection {
+
+    private final NioEventLoop loop;
+    private final SocketChannel client;
+    private SocketChannel server;
+
+    private SelectionKey clientKey;
+    private SelectionKey serverKey;
+
+    private TCPMetrics metrics;
+    private TCPOpPolicy policy;
+    private SocketTuner tuner;
+
+    private Relay c2s;
+    private Relay s2c;
+
+    private boolean closed = false;
+
+    private Backend backend;
+    private UpstreamPool upstream;
+    private long connectStart;
+
+    public NioConnection(NioEventLoop loop, SocketChannel client) {
+        this.loop = loop;
+        this.client = client;
+    }
+
+    /** Usa um socket pré-conectado do pool ou inicia a conexão sem bloquear o loop */
+    void connect(Backend target) throws IOException {
+        backend = target;
+        backend.connectionOpened();
+        UpstreamPool pool = upstream = target.getPool();
+        client.configureBlocking(false);
+
+        server = pool.tryAcquire();
+        if (server != null) {
+            server.configureBlocking(false);
+            onConnected();
+            return;
+        }
+
+        connectStart = System.nanoTime();
+        server = SocketChannel.open();
+        server.configureBlocking(false);
+
+        if (server.connect(pool.address())) {
+            onConnected();
+        } else {
+            serverKey = server.register(loop.selector(), SelectionKey.OP_CONNECT, this);
+            loop.schedule(UpstreamPool.CONNECT_TIMEOUT_MS, () -> {
+                if (!closed && clientKey == null) {
+                    System.out.println("[PROXY-NIO] Timeout conectando ao backend " + pool.address());
+                    close();
+                }
+            });
+        }
+    }
+
+    private void onConnected() throws IOException {
+        if (connectStart != 0) upstream.recordConnect(System.nanoTime() - connectStart);
+
+        metrics = new TCPMetrics(client.socket(), server.socket());
+        policy  = TCPOpPolicy.forConnection(metrics, PolicyScope.of(client.socket(), server.socket()));
+        tuner   = new SocketTuner(client.socket(), server.socket(), metrics, policy);
+        backend.track(metrics);
+
+        // como no ProxyHandler: cwnd, [METRICS] e log amostrados pelo MetricsScheduler compartilhado
+        metrics.startMonitoring();
+        metrics.startBackgroundLogging("logs/metrics.csv", 500);
+
+        c2s = new Relay(Direction.C2S, client, server);
+        s2c = new Relay(Direction.S2C, server, client);
+
+        clientKey = client.register(loop.selector(), 0, this);
+        if (serverKey == null) serverKey = server.register(loop.selector(), 0, this);
+
+        updateInterest();
+    }
+
+    void handle(SelectionKey key) {
+        if (closed || !key.isValid()) return;
+
+        try {
+            if (key.isConnectable()) {
+                // ainda em andamento: a chave continua em OP_CONNECT
+                if (!server.finishConnect()) return;
+                onConnected();
+                return;
+            }
+
+            SocketChannel ch = (SocketChannel) key.channel();
+
+            if (key.isReadable()) {
+                if (ch == client) c2s.read();
+                else s2c.read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                if (ch == server) c2s.flush();
+                else s2c.flush();
+            }
+
+            if (c2s.finished() && s2c.finished()) close();
+            else updateInterest();
+
+        } catch (IOException e) {
+            System.out.println("[PROXY-NIO] Conexão encerrada. (" + e.getMessage() + ")");
+            close();
+        }
+    }
+
+    /** Disparo do TimerWheel (em outra thread): retoma a escrita adiada dentro do loop */
+    private void resume(Relay relay) {
+        loop.execute(() -> {
+            if (closed) return;
+            try {
+                relay.resume();
+                if (c2s.finished() && s2c.finished()) close();
+                else updateInterest();
+            } catch (IOException e) {
+                System.out.println("[PROXY-NIO] Conexão encerrada. (" + e.getMessage() + ")");
+                close();
+            }
+        });
+    }
+
+    private void updateInterest() {
+        if (closed) return;
+        clientKey.interestOps((c2s.canRead() ? SelectionKey.OP_READ : 0)
+                | (s2c.hasPending() ? SelectionKey.OP_WRITE : 0));
+        serverKey.interestOps((s2c.canRead() ? SelectionKey.OP_READ : 0)
+                | (c2s.hasPending() ? SelectionKey.OP_WRITE : 0));
+    }
+
+    void close() {
+        if (closed) return;
+        closed = true;
+
+        if (c2s != null) c2s.close();
+        if (s2c != null) s2c.close();
+        if (metrics != null) metrics.close();
+        if (backend != null) backend.connectionClosed(metrics);
+
+        try { client.close(); } catch (IOException ignored) {}
+        if (server != null) {
+            try { server.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    /** Uma direção do relay (origem -> destino) */
+    private final class Relay {
+
+        private final Direction direction;
+        private final String name;
+        private final SocketChannel src;
+        private final SocketChannel dst;
+        private final PCAPWriter pcap;
+        private ByteBuffer buf; // null enquanto ociosa
+        private long readAt;
+
+        private boolean pending = false; // buf em modo leitura com bytes a escrever
+        private boolean paced = false;   // escrita adiada pelo pacing até o timer disparar
+        private boolean eof = false;
+        private boolean outputShut = false;
+
+        Relay(Direction direction, SocketChannel src, SocketChannel dst) throws IOException {
+            this.direction = direction;
+            this.name = direction.label();
+            this.src = src;
+            this.dst = dst;
+
+            this.pcap = new PCAPWriter(metrics.getCaptureFlow(), direction);
+            MetricsRegistry.global().pipeStarted();
+        }
+
+        boolean canRead() { return !eof && !pending; }
+        boolean hasPending() { return pending && !paced; }
+        boolean finished() { return eof && !pending; }
+
+        void read() throws IOException {
+            buf = BufferPool.DIRECT.acquire(policy.getSendBufferSize());
+            int read = src.read(buf);
+
+            if (read <= 0) {
+                releaseBuffer();
+                if (read < 0) {
+                    eof = true;
+                    shutdownOutput();
+                }
+                return;
+            }
+
+            readAt = System.nanoTime();
+            metrics.onRead(direction, readAt);
+
+            // pcap e política leem a mesma fatia, sem copiar para o heap
+            ByteBuffer view = buf.asReadOnlyBuffer().flip();
+            pcap.writePacket(view.duplicate());
+            // liga/desliga pelo arquivo de política (optimization=), sem reiniciar
+            boolean enableOptimization = policy.isEnabled();
+            if (enableOptimization) policy.apply(view);
+            metrics.recordBytes(direction, read);
+
+            buf.flip();
+            pending = true;
+
+            long wait = enableOptimization ? policy.pacingDelayNanos(read) : 0;
+            if (wait > 0) {
+                paced = true;
+                TimerWheel.shared().schedule(wait, () -> NioConnection.this.resume(this));
+                return;
+            }
+            flush();
+        }
+
+        void resume() throws IOException {
+            paced = false;
+            flush();
+        }
+
+        void flush() throws IOException {
+            if (!pending || paced) return;
+
+            dst.write(buf);
+            if (!buf.hasRemaining()) {
+                metrics.onWritten(direction, System.nanoTime());
+                metrics.recordForward(readAt);
+                releaseBuffer();
+                pending = false;
+                if (eof) shutdownOutput();
+            }
+        }
+
+        private void shutdownOutput() throws IOException {
+            if (pending || outputShut) return;
+            outputShut = true;
+            if (dst.isOpen()) dst.shutdownOutput();
+        }
+
+        private void releaseBuffer() {
+            BufferPool.DIRECT.release(buf);
+            buf = null;
+        }
+
+        void close() {
+            releaseBuffer();
+            pcap.close();
+            MetricsRegistry.global().pipeFinished();
+        }
+    }
+}
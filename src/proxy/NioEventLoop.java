@@ -0,0 +1,112 @@
+package proxy;
+
+import java.io.IOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Event loop de um único Selector. Todas as operações de I/O das conexões
+ * registradas acontecem nesta thread; outras threads só enfileiram tarefas.
+ */
+public class NioEventLoop implements Runnable {
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(); // só acessada pelo loop
+
+    private record Timer(long deadline, Runnable task) implements Comparable<Timer> {
+        @Override
+        public int compareTo(Timer o) { return Long.compare(deadline, o.deadline); }
+    }
+    private volatile boolean running = true;
+
+    public NioEventLoop() throws IOException {
+        this.selector = Selector.open();
+    }
+
+    /** Chamado pela thread de accept: a conexão upstream vem do pool ou é aberta dentro do loop */
+    public void register(SocketChannel client, Backend backend) {
+        execute(() -> {
+            NioConnection conn = new NioConnection(this, client);
+            try {
+                conn.connect(backend);
+            } catch (Exception e) {
+                // close() fecha cliente e servidor e devolve a contagem ativa do backend
+                System.out.println("[PROXY-NIO] Falha ao registrar cliente: " + e.getMessage());
+                conn.close();
+            }
+        });
+    }
+
+    public void execute(Runnable task) {
+        tasks.add(task);
+        selector.wakeup();
+    }
+
+    /** Agenda uma tarefa no próprio loop; deve ser chamado a partir da thread do loop */
+    void schedule(long delayMs, Runnable task) {
+        timers.add(new Timer(System.nanoTime() + delayMs * 1_000_000L, task));
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    public void shutdown() {
+        running = false;
+        selector.wakeup();
+    }
+
+    @Override
+    public void run() {
+        try {
+            while (running) {
+                selector.select(nextTimeoutMs());
+                runTasks();
+                runTimers();
+
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                while (it.hasNext()) {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    NioConnection conn = (NioConnection) key.attachment();
+                    conn.handle(key);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            for (SelectionKey key : selector.keys()) {
+                ((NioConnection) key.attachment()).close();
+            }
+            try { selector.close(); } catch (IOException ignored) {}
+        }
+    }
+
+    private long nextTimeoutMs() {
+        Timer first = timers.peek();
+        if (first == null) return 0; // 0 = sem timeout
+        long ms = (first.deadline() - System.nanoTime()) / 1_000_000L;
+        return Math.max(1, ms);
+    }
+
+    private void runTimers() {
+        long now = System.nanoTime();
+        while (!timers.isEmpty() && timers.peek().deadline() <= now) {
+            timers.poll().task().run();
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+}
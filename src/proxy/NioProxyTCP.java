@@ -0,0 +1,62 @@
+package proxy;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Proxy baseado em NIO: threads de accept (AcceptorGroup) e um pequeno
+ * conjunto de event loops (um por núcleo). Cada conexão é atribuída a um loop
+ * em round-robin e fica confinada a ele durante toda a vida.
+ */
+public class NioProxyTCP implements Runnable {
+
+    private final int listenPort;
+    private final BackendSet backends;
+    private final int loopCount;
+
+    public NioProxyTCP(int listenPort, String targetHost, int targetPort) {
+        this(listenPort, BackendSet.single(targetHost, targetPort));
+    }
+
+    public NioProxyTCP(int listenPort, String targetHost, int targetPort, int loopCount) {
+        this(listenPort, BackendSet.single(targetHost, targetPort), loopCount);
+    }
+
+    public NioProxyTCP(int listenPort, BackendSet backends) {
+        this(listenPort, backends, Runtime.getRuntime().availableProcessors());
+    }
+
+    public NioProxyTCP(int listenPort, BackendSet backends, int loopCount) {
+        this.listenPort = listenPort;
+        this.backends = backends;
+        this.loopCount = Math.max(1, loopCount);
+    }
+
+    @Override
+    public void run() {
+        NioEventLoop[] loops = new NioEventLoop[loopCount];
+
+        try {
+            for (int i = 0; i < loopCount; i++) {
+                loops[i] = new NioEventLoop();
+                Thread t = new Thread(loops[i], "NIO-Loop-" + i);
+                t.setDaemon(true);
+                t.start();
+            }
+            System.out.println("[PROXY-NIO] " + loopCount + " event loops, backends " + backends);
+
+            AtomicInteger next = new AtomicInteger();
+
+            AcceptorGroup.fromEnv(listenPort).run("PROXY-NIO", client -> {
+                System.out.println("[PROXY-NIO] Cliente conectado");
+                loops[Math.floorMod(next.getAndIncrement(), loopCount)].register(client, backends.choose());
+            });
+
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            for (NioEventLoop loop : loops) {
+                if (loop != null) loop.shutdown();
+            }
+        }
+    }
+}
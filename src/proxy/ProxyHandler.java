@@ -1,8 +1,12 @@
 package proxy;
 
+import metrics.Direction;
 import metrics.TCPMetrics;
+import optimizations.PolicyScope;
 import optimizations.TCPOpPolicy;
 
+import network.ThreadMode;
+
 import java.net.Socket;
 
 public class ProxyHandler implements Runnable {
@@ -10,49 +14,64 @@ public class ProxyHandler implements Runnable {
     private final Socket clientSocket;
     private final Socket serverSocket;
 
-    private final Object sendLock = new Object(); // mutex global para envio
-
     private final TCPMetrics metrics;
     private final TCPOpPolicy policy;
+    private final SocketTuner tuner;
+    private final ThreadMode threadMode;
+    private final RelayMode relayMode;
+
+    // usado apenas pelo ChannelPipe: sem captura e sem políticas o payload não passa pelo heap
+    // (otimização: PROXY_OPTIMIZATION ou optimization= no arquivo de política)
+    private static final boolean CAPTURE_ENABLED = !"false".equalsIgnoreCase(System.getenv("PROXY_CAPTURE"));
 
     public ProxyHandler(Socket client, String host, int port) throws Exception {
+        this(client, host, port, ThreadMode.PLATFORM);
+    }
+
+    public ProxyHandler(Socket client, String host, int port, ThreadMode threadMode) throws Exception {
+        this(client, host, port, threadMode, RelayMode.STREAM);
+    }
+
+    /** Conexão upstream vem do UpstreamPool do destino (pré-aquecida quando possível) */
+    public ProxyHandler(Socket client, String host, int port,
+                        ThreadMode threadMode, RelayMode relayMode) throws Exception {
+        this(client, UpstreamPool.forTarget(host, port).acquire().socket(), threadMode, relayMode);
+    }
+
+    public ProxyHandler(Socket client, Socket upstream,
+                        ThreadMode threadMode, RelayMode relayMode) throws Exception {
         this.clientSocket = client;
-        this.serverSocket = new Socket(host, port);
+        this.serverSocket = upstream;
+        this.threadMode = threadMode;
+
+        boolean channels = client.getChannel() != null && upstream.getChannel() != null;
+        this.relayMode = (relayMode == RelayMode.CHANNEL && channels) ? RelayMode.CHANNEL : RelayMode.STREAM;
 
         this.metrics = new TCPMetrics(clientSocket, serverSocket);
-        this.policy  = TCPOpPolicy.defaultPolicies(metrics);
+        this.policy  = TCPOpPolicy.forConnection(metrics, PolicyScope.of(clientSocket, serverSocket));
+        this.tuner   = new SocketTuner(clientSocket, serverSocket, metrics, policy);
     }
 
     @Override
     public void run() {
         try {
             // ---------- MONITORAMENTO DAS MÉTRICAS ----------
-            Thread monitor = new Thread(() -> metrics.monitor(), "Metrics-Monitor");
-            monitor.setDaemon(true); // não impede o programa de fechar
-            monitor.start();
+            // amostrados pelo MetricsScheduler compartilhado, sem threads por conexão
+            metrics.startMonitoring();
 
-            // inicia logger CSV em background (opcional) - cria logs/<epoch>.csv
+            // log de métricas (binário compartilhado ou logs/<prefixo>_<epoch>.csv)
             metrics.startBackgroundLogging("logs/metrics.csv", 500);
             // -------------------------------------------------
 
-            Thread c2s = new Thread(
-                new ProxyPipe(clientSocket, serverSocket, "C→S", metrics, policy, sendLock),
-                "Pipe-C2S"
-            );
-
-            Thread s2c = new Thread(
-                new ProxyPipe(serverSocket, clientSocket, "S→C", metrics, policy, sendLock),
-                "Pipe-S2C"
-            );
-
-            c2s.start();
-            s2c.start();
+            // cada direção é confinada à sua thread (pcap e buffer próprios);
+            // só métricas e política são compartilhadas, e ambas são thread-safe
+            Thread c2s = threadMode.start("Pipe-C2S", newPipe(clientSocket, serverSocket, Direction.C2S));
+            Thread s2c = threadMode.start("Pipe-S2C", newPipe(serverSocket, clientSocket, Direction.S2C));
 
             c2s.join();
             s2c.join();
 
-            Thread echo = new Thread(new EchoPipe(clientSocket, metrics, sendLock), "Echo-Pipe");
-            echo.start();
+            Thread echo = threadMode.start("Echo-Pipe", new EchoPipe(clientSocket, metrics));
             echo.join();
 
         } catch (Exception e) {
@@ -60,6 +79,20 @@ public class ProxyHandler implements Runnable {
         } finally {
             // garante que a conexão e os loggers sejam fechados
             metrics.close();
+            try { clientSocket.close(); } catch (Exception ignored) {}
+            try { serverSocket.close(); } catch (Exception ignored) {}
+        }
+    }
+
+    public TCPMetrics getMetrics() {
+        return metrics;
+    }
+
+    private Runnable newPipe(Socket in, Socket out, Direction dir) throws Exception {
+        if (relayMode == RelayMode.CHANNEL) {
+            return new ChannelPipe(in.getChannel(), out.getChannel(), dir, metrics, policy,
+                    CAPTURE_ENABLED);
         }
+        return new ProxyPipe(in, out, dir, metrics, policy);
     }
 }
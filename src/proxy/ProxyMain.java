@@ -1,9 +1,29 @@
 package proxy;
 
+import metrics.MetricsHttpServer;
+import network.ThreadMode;
+
 public class ProxyMain {
     public static void main(String[] args) {
-        String targetHost = resolve("tcp-server");
-        new Thread(new ProxyTCP(8000, targetHost, 9000)).start();
+        BackendSet backends = BackendSet.fromEnv(resolve("tcp-server"), 9000);
+        ProxyMode mode = ProxyMode.fromEnv();
+        RelayMode relay = RelayMode.fromEnv();
+        System.out.println("[PROXY] Modo de execução: " + mode);
+
+        MetricsHttpServer.startFromEnv();
+
+        switch (mode) {
+            case VIRTUAL:
+                new Thread(new ProxyTCP(8000, backends, ThreadMode.VIRTUAL, relay)).start();
+                break;
+            case NIO:
+                new Thread(new NioProxyTCP(8000, backends)).start();
+                break;
+            case THREAD:
+            default:
+                new Thread(new ProxyTCP(8000, backends, ThreadMode.PLATFORM, relay)).start();
+                break;
+        }
     }
 
     private static String resolve(String hostname) {
@@ -0,0 +1,26 @@
+package proxy;
+
+/**
+ * Motor de execução do proxy.
+ *
+ * THREAD:  modelo original (ProxyHandler + uma thread por pipe).
+ * VIRTUAL: mesmo modelo do THREAD, mas com virtual threads do Java 21.
+ * NIO:     event loops com Selector (um por núcleo), sem threads por conexão.
+ */
+public enum ProxyMode {
+    THREAD,
+    VIRTUAL,
+    NIO;
+
+    /** Lê PROXY_MODE do ambiente (THREAD se ausente ou inválido) */
+    public static ProxyMode fromEnv() {
+        String value = System.getenv("PROXY_MODE");
+        if (value == null || value.isBlank()) return THREAD;
+        try {
+            return ProxyMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("[PROXY] PROXY_MODE inválido: " + value + ". Usando THREAD.");
+            return THREAD;
+        }
+    }
+}
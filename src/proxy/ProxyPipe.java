@@ -1,79 +1,102 @@
 package proxy;
 
+import buffer.BufferPool;
+import buffer.PooledReader;
+import buffer.WriteCoalescer;
 import metrics.TCPMetrics;
 import optimizations.TCPOpPolicy;
+import optimizations.TimerWheel;
+import metrics.Direction;
+import metrics.MetricsRegistry;
 import metrics.PCAPWriter;
 
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.Socket;
-import java.time.Instant;
+import java.nio.ByteBuffer;
 
 public class ProxyPipe implements Runnable {
 
     private final Socket inSock;
     private final Socket outSock;
+    private final Direction direction;
     private final String name;
     private final TCPMetrics metrics;
     private final TCPOpPolicy policy;
-    private final Object lock;
 
     private final PCAPWriter pcap;
 
-    //Mude para false se quiser desabilitar as otimizações
-    private final boolean enableOptimization = true;
-
-    public ProxyPipe(Socket in, Socket out, String name,
-                     TCPMetrics metrics, TCPOpPolicy policy, Object lock) throws Exception {
+    public ProxyPipe(Socket in, Socket out, Direction direction,
+                     TCPMetrics metrics, TCPOpPolicy policy) throws Exception {
 
         this.inSock = in;
         this.outSock = out;
-        this.name = name;
+        this.direction = direction;
+        this.name = direction.label();
         this.metrics = metrics;
         this.policy = policy;
-        this.lock = lock;
 
-        String safeName = name.replace("→", "_").replaceAll("[^a-zA-Z0-9_\\-\\.]", "_");
-        String fileName = "pcap/" + safeName + "_" + Instant.now().toEpochMilli() + ".pcap";
-        this.pcap = new PCAPWriter(fileName);
+        this.pcap = new PCAPWriter(metrics.getCaptureFlow(), direction);
     }
 
     @Override
     public void run() {
+        MetricsRegistry.global().pipeStarted();
         try (InputStream in = inSock.getInputStream();
-             OutputStream out = outSock.getOutputStream()) {
-
-            byte[] buffer = new byte[policy.getSendBufferSize()];
-            int read;
-            int flushCounter = 0;
-            boolean optimApplied = false;
-
-            while ((read = in.read(buffer)) != -1) {
-                synchronized (lock) {
-                    // grava somente os bytes válidos no pcap
-                    pcap.writePacket(buffer, read);
-
-                    // aplica otimizações apenas uma vez
-                    if (enableOptimization) {
-                        policy.apply(buffer, read);
+             OutputStream out = outSock.getOutputStream();
+             PooledReader reader = new PooledReader(in, BufferPool.HEAP);
+             WriteCoalescer writer = new WriteCoalescer(out)) {
+
+            // o envio C→S conta para o RTT quando o coalescer entrega ao socket, não quando recebe
+            writer.setFlushObserver((n, waitNanos, writeNanos) -> {
+                metrics.recordFlush(n, waitNanos, writeNanos);
+                metrics.onWritten(direction, System.nanoTime());
+            });
+            ByteBuffer chunk;
+
+            // buffer emprestado do pool a cada ciclo; conexão ociosa não retém memória
+            while ((chunk = reader.next(policy.getSendBufferSize())) != null) {
+                long readAt = System.nanoTime();
+                metrics.onRead(direction, readAt);
+                byte[] buffer = chunk.array();
+                int read = chunk.remaining();
+
+                // grava somente os bytes válidos no pcap
+                pcap.writePacket(buffer, read);
+
+                // aplica otimizações apenas uma vez
+                // liga/desliga pelo arquivo de política (optimization=), sem reiniciar
+                if (policy.isEnabled()) {
+                    policy.apply(buffer, read);
+                    // orçamento de flush do snapshot atual (os sockets são ajustados pelo controlador)
+                    writer.setBudgetMicros(policy.getFlushBudgetUs());
+
+                    // acima do orçamento do pacing: o que estava pendente sai antes e a escrita espera a roda
+                    long wait = policy.pacingDelayNanos(read);
+                    if (wait > 0) {
+                        writer.flush();
+                        TimerWheel.shared().await(wait);
                     }
-
-                    // escreve no output
-                    out.write(buffer, 0, read);
-                    flushCounter++;
-                    // flush a cada 8 chunks (~64KB)
-                    if (flushCounter % 8 == 0) out.flush();
                 }
 
-                metrics.recordBytes(name, read);
+                // escreve no output (agrupado por tamanho/orçamento de latência);
+                // uma consulta de ociosidade por chunk serve à escrita e ao buffer
+                boolean idle = reader.idle();
+                writer.write(buffer, 0, read, idle);
+                metrics.recordForward(readAt);
+
+                metrics.recordBytes(direction, read);
+                reader.recycle(idle);
             }
 
             // flush final para garantir envio de tudo
-            try { out.flush(); } catch (Exception ignored) {}
+            writer.flush();
+            System.out.println("[COALESCE] " + name + " " + writer);
 
         } catch (Exception e) {
             System.out.println("[PIPE] " + name + " encerrado. (" + e.getMessage() + ")");
         } finally {
+            MetricsRegistry.global().pipeFinished();
             metrics.close();
             try { pcap.close(); } catch (Exception ignored) {}
         }
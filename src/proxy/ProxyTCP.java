@@ -1,34 +1,71 @@
 package proxy;
 
-import java.net.ServerSocket;
-import java.net.Socket;
+import network.ThreadMode;
+
+import java.nio.channels.SocketChannel;
 
 public class ProxyTCP implements Runnable {
 
     private final int listenPort;
-    private final String targetHost;
-    private final int targetPort;
+    private final BackendSet backends;
+    private final ThreadMode threadMode;
+    private final RelayMode relayMode;
 
     public ProxyTCP(int listenPort, String targetHost, int targetPort) {
+        this(listenPort, targetHost, targetPort, ThreadMode.PLATFORM);
+    }
+
+    public ProxyTCP(int listenPort, String targetHost, int targetPort, ThreadMode threadMode) {
+        this(listenPort, targetHost, targetPort, threadMode, RelayMode.STREAM);
+    }
+
+    public ProxyTCP(int listenPort, String targetHost, int targetPort,
+                    ThreadMode threadMode, RelayMode relayMode) {
+        this(listenPort, BackendSet.single(targetHost, targetPort), threadMode, relayMode);
+    }
+
+    public ProxyTCP(int listenPort, BackendSet backends, ThreadMode threadMode, RelayMode relayMode) {
         this.listenPort = listenPort;
-        this.targetHost = targetHost;
-        this.targetPort = targetPort;
+        this.backends = backends;
+        this.threadMode = threadMode;
+        this.relayMode = relayMode;
     }
 
     @Override
     public void run() {
-        try (ServerSocket ss = new ServerSocket(listenPort)) {
-            System.out.println("[PROXY] Escutando na porta " + listenPort);
-
-            while (true) {
-                Socket client = ss.accept();
+        System.out.println("[PROXY] threads " + threadMode + ", relay " + relayMode + ", backends " + backends);
+        try {
+            AcceptorGroup.fromEnv(listenPort).run("PROXY", client -> {
                 System.out.println("[PROXY] Cliente conectado");
+                // o connect upstream acontece na thread do handler: o accept nunca espera o backend
+                threadMode.start("Proxy-Handler", () -> handle(client));
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
 
-                new Thread(new ProxyHandler(client, targetHost, targetPort)).start();
-            }
+    private void handle(SocketChannel client) {
+        Backend backend = backends.choose();
+        backend.connectionOpened();
 
+        ProxyHandler handler;
+        try {
+            handler = new ProxyHandler(client.socket(), backend.getPool().acquire().socket(),
+                    threadMode, relayMode);
         } catch (Exception e) {
-            e.printStackTrace();
+            backend.connectionClosed(null);
+            System.out.println("[PROXY] Backend " + backend.getHost() + ":" + backend.getPort()
+                    + " indisponível (" + e.getMessage() + "). Encerrando cliente.");
+            try { client.close(); } catch (Exception ignored) {}
+            return;
+        }
+
+        backend.track(handler.getMetrics());
+        try {
+            handler.run();
+        } finally {
+            backend.connectionClosed(handler.getMetrics());
         }
     }
 }
@@ -0,0 +1,24 @@
+package proxy;
+
+/**
+ * Caminho de dados usado pelos pipes do proxy em modo thread.
+ *
+ * STREAM:  InputStream/OutputStream com byte[] no heap (ProxyPipe).
+ * CHANNEL: SocketChannel com ByteBuffers diretos do BufferPool (ChannelPipe).
+ */
+public enum RelayMode {
+    STREAM,
+    CHANNEL;
+
+    /** Lê RELAY_MODE do ambiente (STREAM se ausente ou inválido) */
+    public static RelayMode fromEnv() {
+        String value = System.getenv("RELAY_MODE");
+        if (value == null || value.isBlank()) return STREAM;
+        try {
+            return RelayMode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("[PROXY] RELAY_MODE inválido: " + value + ". Usando STREAM.");
+            return STREAM;
+        }
+    }
+}
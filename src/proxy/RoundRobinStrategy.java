@@ -0,0 +1,14 @@
+package proxy;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class RoundRobinStrategy implements BalanceStrategy {
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    @Override
+    public Backend pick(List<Backend> backends) {
+        return backends.get(Math.floorMod(next.getAndIncrement(), backends.size()));
+    }
+}
@@ -0,0 +1,100 @@
+package proxy;
+
+import metrics.TCPMetrics;
+import optimizations.TCPOpPolicy;
+import sockets.NativeTcp;
+
+import java.net.Socket;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aplica as decisões da política (SO_SNDBUF, SO_RCVBUF, TCP_NODELAY e, com
+ * a camada nativa, TCP_CONGESTION e TCP_NOTSENT_LOWAT) aos dois sockets de
+ * uma conexão em andamento. O algoritmo vale só para esta conexão; sem a
+ * camada nativa ele fica como MOCK-<algo> nas métricas, como antes fora do
+ * Linux.
+ *
+ * Registrado como listener da política: applyIfChanged() roda na thread do
+ * PolicyController logo após cada troca, nunca no caminho de dados. O CAS
+ * continua valendo para chamadas diretas concorrentes.
+ */
+public final class SocketTuner {
+
+    private final Socket client;
+    private final Socket server;
+    private final TCPMetrics metrics;
+    private final AtomicLong appliedVersion;
+
+    public SocketTuner(Socket client, Socket server, TCPMetrics metrics, TCPOpPolicy policy) {
+        this.client = client;
+        this.server = server;
+        this.metrics = metrics;
+        // começa na versão atual: os defaults do sistema valem até a primeira troca de política
+        this.appliedVersion = new AtomicLong(policy.getTuningVersion());
+        recordApplied();
+        policy.setTuningListener(() -> applyIfChanged(policy));
+    }
+
+    public void applyIfChanged(TCPOpPolicy policy) {
+        long version = policy.getTuningVersion();
+        long applied = appliedVersion.get();
+        if (version == applied || !appliedVersion.compareAndSet(applied, version)) return;
+
+        int bufSize = policy.getSocketBufferSize();
+        boolean noDelay = policy.isTcpNoDelay();
+
+        configure(client, bufSize, noDelay);
+        configure(server, bufSize, noDelay);
+
+        String algo = policy.getCongestionAlgorithm();
+        int lowat = policy.getNotSentLowat();
+        String nativeResult = algo == null ? "" : applyNative(algo, lowat);
+
+        recordApplied();
+
+        System.out.println("[TUNE] v" + version + " SO_SNDBUF/SO_RCVBUF=" + bufSize + " TCP_NODELAY=" + noDelay + nativeResult);
+    }
+
+    /** TCP_CONGESTION e TCP_NOTSENT_LOWAT nos dois sockets; registra o algoritmo efetivo */
+    private String applyNative(String algo, int lowat) {
+        NativeTcp tcp = NativeTcp.shared();
+        if (!tcp.isAvailable()) {
+            metrics.setCongestionAlgorithm("MOCK-" + algo.toUpperCase());
+            return "";
+        }
+
+        int ccServer = tcp.setCongestion(server, algo);
+        int ccClient = tcp.setCongestion(client, algo);
+        tcp.setNotSentLowat(server, lowat);
+        tcp.setNotSentLowat(client, lowat);
+
+        // o kernel recusa algoritmos não carregados (ENOENT) ou não permitidos (EPERM): fica o anterior
+        String effective = tcp.getCongestion(server);
+        if (ccServer == 0) metrics.setCongestionAlgorithm(effective == null ? algo.toUpperCase() : effective.toUpperCase());
+        else metrics.setCongestionAlgorithm("FAILED-" + algo.toUpperCase());
+
+        return " TCP_CONGESTION=" + algo + "(" + NativeTcp.errnoName(ccServer) + "/" + NativeTcp.errnoName(ccClient) + ")" +
+                " TCP_NOTSENT_LOWAT=" + (lowat < 0 ? "off" : lowat);
+    }
+
+    /** Registra nas métricas os valores efetivos (o kernel pode arredondar/dobrar) */
+    private void recordApplied() {
+        try {
+            metrics.setAppliedSocketOptions(server.getSendBufferSize(),
+                    server.getReceiveBufferSize(), server.getTcpNoDelay());
+        } catch (Exception ignored) {}
+    }
+
+    private void configure(Socket s, int bufSize, boolean noDelay) {
+        if (s.isClosed()) return;
+        try {
+            if (bufSize > 0) {
+                s.setSendBufferSize(bufSize);
+                s.setReceiveBufferSize(bufSize);
+            }
+            s.setTcpNoDelay(noDelay);
+        } catch (Exception e) {
+            System.out.println("[TUNE] Falha ao ajustar socket: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package proxy;
+
+import network.Env;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pool de conexões upstream pré-estabelecidas, um por host:port.
+ *
+ * Uma thread de fundo mantém 'size' sockets conectados e verificados; o
+ * accept do proxy recebe um deles imediatamente em vez de pagar o handshake
+ * TCP com o backend. Sem socket disponível (miss) a conexão é feita na hora.
+ *
+ * Tamanho via UPSTREAM_POOL_SIZE (padrão 4, 0 desativa o pré-aquecimento) e
+ * timeout de connect via UPSTREAM_CONNECT_TIMEOUT_MS (padrão 3000).
+ */
+public final class UpstreamPool {
+
+    private static final Map<String, UpstreamPool> POOLS = new ConcurrentHashMap<>();
+
+    private static final int DEFAULT_SIZE = 4;
+    public static final int CONNECT_TIMEOUT_MS = Env.intValue("UPSTREAM_CONNECT_TIMEOUT_MS", 3000);
+    private static final long MAX_IDLE_MS = 30_000;       // backend pode derrubar conexões antigas
+    private static final long HEALTH_INTERVAL_MS = 1000;
+    private static final long REPORT_INTERVAL_MS = 10_000;
+
+    private final String host;
+    private final int port;
+    private final int size;
+
+    private final LinkedBlockingDeque<Idle> idle = new LinkedBlockingDeque<>();
+    private final Thread refiller;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong connects = new AtomicLong();
+    private final AtomicLong connectFailures = new AtomicLong();
+    private final AtomicLong connectNanosTotal = new AtomicLong();
+    private final AtomicLong connectNanosMax = new AtomicLong();
+
+    private record Idle(SocketChannel channel, long since) {}
+
+    public static UpstreamPool forTarget(String host, int port) {
+        return POOLS.computeIfAbsent(host + ":" + port,
+                k -> new UpstreamPool(host, port, Math.max(0, Env.intValue("UPSTREAM_POOL_SIZE", DEFAULT_SIZE))));
+    }
+
+    public UpstreamPool(String host, int port, int size) {
+        this.host = host;
+        this.port = port;
+        this.size = size;
+
+        if (size > 0) {
+            refiller = new Thread(this::refillLoop, "Upstream-Pool-" + host + ":" + port);
+            refiller.setDaemon(true);
+            refiller.start();
+        } else {
+            refiller = null;
+        }
+    }
+
+    /** Retorna um socket conectado ao backend (do pool ou conectado na hora) */
+    public SocketChannel acquire() throws IOException {
+        SocketChannel ch = tryAcquire();
+        if (ch != null) return ch;
+        return connect();
+    }
+
+    /** Apenas do pool; null em caso de miss (quem chama conecta por conta própria) */
+    public SocketChannel tryAcquire() {
+        Idle entry;
+        while ((entry = idle.pollFirst()) != null) {
+            if (entry.channel().isOpen() && entry.channel().isConnected()) {
+                hits.incrementAndGet();
+                wakeRefiller();
+                return entry.channel();
+            }
+            closeQuietly(entry.channel());
+        }
+        misses.incrementAndGet();
+        wakeRefiller();
+        return null;
+    }
+
+    /** Registra a latência de um connect feito fora do pool (ex.: connect não bloqueante do NIO) */
+    public void recordConnect(long nanos) {
+        connects.incrementAndGet();
+        connectNanosTotal.addAndGet(nanos);
+        connectNanosMax.accumulateAndGet(nanos, Math::max);
+    }
+
+    public InetSocketAddress address() {
+        return new InetSocketAddress(host, port);
+    }
+
+    private SocketChannel connect() throws IOException {
+        long start = System.nanoTime();
+        SocketChannel ch = SocketChannel.open();
+        try {
+            ch.socket().connect(address(), CONNECT_TIMEOUT_MS);
+        } catch (IOException e) {
+            connectFailures.incrementAndGet();
+            closeQuietly(ch);
+            throw e;
+        }
+        recordConnect(System.nanoTime() - start);
+        return ch;
+    }
+
+    private void wakeRefiller() {
+        if (refiller != null) LockSupport.unpark(refiller);
+    }
+
+    private void refillLoop() {
+        long lastHealth = 0;
+        long lastReport = System.currentTimeMillis();
+        long reportedHits = 0, reportedMisses = 0;
+
+        while (true) {
+            try {
+                while (idle.size() < size) {
+                    idle.offerLast(new Idle(connect(), System.currentTimeMillis()));
+                }
+            } catch (IOException e) {
+                System.out.println("[UPSTREAM] Falha ao pré-conectar em " + host + ":" + port + " (" + e.getMessage() + ")");
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(HEALTH_INTERVAL_MS));
+                continue;
+            }
+
+            long now = System.currentTimeMillis();
+            if (now - lastHealth >= HEALTH_INTERVAL_MS) {
+                healthCheck(now);
+                lastHealth = now;
+            }
+
+            if (now - lastReport >= REPORT_INTERVAL_MS) {
+                long h = hits.get(), m = misses.get();
+                if (h != reportedHits || m != reportedMisses) {
+                    System.out.println("[UPSTREAM] " + this);
+                    reportedHits = h;
+                    reportedMisses = m;
+                }
+                lastReport = now;
+            }
+
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(HEALTH_INTERVAL_MS));
+        }
+    }
+
+    /** Remove sockets fechados pelo backend, com dados inesperados ou antigos demais */
+    private void healthCheck(long now) {
+        ByteBuffer probe = ByteBuffer.allocate(1);
+        int n = idle.size();
+        for (int i = 0; i < n; i++) {
+            Idle entry = idle.pollFirst();
+            if (entry == null) break;
+
+            SocketChannel ch = entry.channel();
+            boolean healthy = ch.isOpen() && now - entry.since() < MAX_IDLE_MS;
+            if (healthy) {
+                try {
+                    ch.configureBlocking(false);
+                    probe.clear();
+                    healthy = ch.read(probe) == 0; // -1: fechado; >0: backend falou antes do cliente
+                    ch.configureBlocking(true);
+                } catch (IOException e) {
+                    healthy = false;
+                }
+            }
+
+            if (healthy) idle.offerLast(entry);
+            else closeQuietly(ch);
+        }
+    }
+
+    private static void closeQuietly(SocketChannel ch) {
+        try { ch.close(); } catch (IOException ignored) {}
+    }
+
+    public long getHits() { return hits.get(); }
+    public long getMisses() { return misses.get(); }
+    public int getIdleCount() { return idle.size(); }
+
+    public double getHitRatio() {
+        long h = hits.get(), m = misses.get();
+        return (h + m) == 0 ? 0 : (double) h / (h + m);
+    }
+
+    /** Latência média de connect em µs */
+    public long getAvgConnectMicros() {
+        long c = connects.get();
+        return c == 0 ? 0 : connectNanosTotal.get() / c / 1000;
+    }
+
+    public long getMaxConnectMicros() {
+        return connectNanosMax.get() / 1000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%s:%d hit=%.1f%% (%d/%d) idle=%d connect avg=%dµs max=%dµs falhas=%d",
+                host, port, getHitRatio() * 100, hits.get(), hits.get() + misses.get(),
+                idle.size(), getAvgConnectMicros(), getMaxConnectMicros(), connectFailures.get());
+    }
+}
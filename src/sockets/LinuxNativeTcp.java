@@ -0,0 +1,173 @@
+package sockets;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemoryLayout;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.StructLayout;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.VarHandle;
+import java.nio.charset.StandardCharsets;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * setsockopt/getsockopt/ioctl da libc via FFM (Java 21, --enable-preview).
+ *
+ * Cada chamada usa uma Arena confinada para os buffers e captura o errno
+ * do próprio downcall. As chamadas são raras (troca de política, amostras
+ * do KernelTcpSampler), então não há cache de buffers.
+ *
+ * Carregada apenas por NativeTcp.shared().
+ */
+final class LinuxNativeTcp extends NativeTcp {
+
+    private static final int IPPROTO_TCP = 6;
+    private static final int TCP_INFO = 11;
+    private static final int TCP_CONGESTION = 13;
+    private static final int TCP_NOTSENT_LOWAT = 25;
+    private static final long SIOCINQ = 0x541B;   // FIONREAD
+    private static final long SIOCOUTQ = 0x5411;  // TIOCOUTQ
+
+    private static final int TCP_CA_NAME_MAX = 16;
+    private static final int TCP_INFO_MAX = 256;
+
+    private final MethodHandle setsockopt;
+    private final MethodHandle getsockopt;
+    private final MethodHandle ioctl;
+    private final StructLayout callState = Linker.Option.captureStateLayout();
+    private final VarHandle errno = callState.varHandle(MemoryLayout.PathElement.groupElement("errno"));
+
+    LinuxNativeTcp() {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup libc = linker.defaultLookup();
+        Linker.Option captureErrno = Linker.Option.captureCallState("errno");
+
+        setsockopt = linker.downcallHandle(libc.find("setsockopt").orElseThrow(),
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, JAVA_INT), captureErrno);
+        getsockopt = linker.downcallHandle(libc.find("getsockopt").orElseThrow(),
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS), captureErrno);
+        // int ioctl(int fd, unsigned long request, ...): o terceiro argumento é variádico
+        ioctl = linker.downcallHandle(libc.find("ioctl").orElseThrow(),
+                FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, ADDRESS),
+                Linker.Option.firstVariadicArg(2), captureErrno);
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return true;
+    }
+
+    @Override
+    public String describe() {
+        return "ativo (FFM)";
+    }
+
+    @Override
+    int setCongestion(int fd, String algo) {
+        try (Arena arena = Arena.ofConfined()) {
+            byte[] name = algo.getBytes(StandardCharsets.US_ASCII);
+            MemorySegment value = arena.allocate(name.length);
+            value.copyFrom(MemorySegment.ofArray(name));
+            MemorySegment state = arena.allocate(callState);
+            int rc = (int) setsockopt.invokeExact(state, fd, IPPROTO_TCP, TCP_CONGESTION, value, name.length);
+            return rc == 0 ? 0 : (int) errno.get(state);
+        } catch (Throwable e) {
+            return UNAVAILABLE;
+        }
+    }
+
+    @Override
+    String getCongestion(int fd) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment value = arena.allocate(TCP_CA_NAME_MAX);
+            MemorySegment len = arena.allocate(JAVA_INT);
+            len.set(JAVA_INT, 0, TCP_CA_NAME_MAX);
+            MemorySegment state = arena.allocate(callState);
+            int rc = (int) getsockopt.invokeExact(state, fd, IPPROTO_TCP, TCP_CONGESTION, value, len);
+            if (rc != 0) return null;
+
+            int n = Math.min(len.get(JAVA_INT, 0), TCP_CA_NAME_MAX);
+            int end = 0;
+            while (end < n && value.get(JAVA_BYTE, end) != 0) end++;
+            byte[] name = value.asSlice(0, end).toArray(JAVA_BYTE);
+            return new String(name, StandardCharsets.US_ASCII);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    @Override
+    int setNotSentLowat(int fd, int bytes) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment value = arena.allocate(JAVA_INT);
+            // UINT_MAX (-1 como int) é o padrão do kernel: sem limite
+            value.set(JAVA_INT, 0, bytes < 0 ? -1 : bytes);
+            MemorySegment state = arena.allocate(callState);
+            int rc = (int) setsockopt.invokeExact(state, fd, IPPROTO_TCP, TCP_NOTSENT_LOWAT, value, (int) JAVA_INT.byteSize());
+            return rc == 0 ? 0 : (int) errno.get(state);
+        } catch (Throwable e) {
+            return UNAVAILABLE;
+        }
+    }
+
+    @Override
+    TcpInfo tcpInfo(int fd) {
+        try (Arena arena = Arena.ofConfined()) {
+            MemorySegment info = arena.allocate(TCP_INFO_MAX, 8);
+            MemorySegment len = arena.allocate(JAVA_INT);
+            len.set(JAVA_INT, 0, TCP_INFO_MAX);
+            MemorySegment state = arena.allocate(callState);
+            int rc = (int) getsockopt.invokeExact(state, fd, IPPROTO_TCP, TCP_INFO, info, len);
+            if (rc != 0) return null;
+            int n = len.get(JAVA_INT, 0);
+
+            return new TcpInfo(
+                    u8(info, n, 0),     // tcpi_state
+                    u8(info, n, 1),     // tcpi_ca_state
+                    u8(info, n, 2),     // tcpi_retransmits
+                    u32(info, n, 8),    // tcpi_rto
+                    (int) u32(info, n, 16),  // tcpi_snd_mss
+                    (int) u32(info, n, 24),  // tcpi_unacked
+                    (int) u32(info, n, 32),  // tcpi_lost
+                    (int) u32(info, n, 100), // tcpi_total_retrans
+                    u32(info, n, 68),   // tcpi_rtt
+                    u32(info, n, 72),   // tcpi_rttvar
+                    (int) Math.min(Integer.MAX_VALUE, u32(info, n, 76)), // tcpi_snd_ssthresh
+                    (int) u32(info, n, 80),  // tcpi_snd_cwnd
+                    u64(info, n, 104),  // tcpi_pacing_rate
+                    u64(info, n, 160),  // tcpi_delivery_rate
+                    u32(info, n, 144),  // tcpi_notsent_bytes
+                    u32(info, n, 148),  // tcpi_min_rtt
+                    queue(arena, fd, SIOCOUTQ),
+                    queue(arena, fd, SIOCINQ));
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+
+    private long queue(Arena arena, int fd, long request) throws Throwable {
+        MemorySegment value = arena.allocate(JAVA_INT);
+        MemorySegment state = arena.allocate(callState);
+        int rc = (int) ioctl.invokeExact(state, fd, request, value);
+        return rc == 0 ? value.get(JAVA_INT, 0) : -1;
+    }
+
+    // leituras de struct tcp_info (ordem do host); -1 se o kernel devolveu menos bytes
+    private static int u8(MemorySegment s, int len, int offset) {
+        return offset + 1 <= len ? Byte.toUnsignedInt(s.get(JAVA_BYTE, offset)) : -1;
+    }
+
+    private static long u32(MemorySegment s, int len, int offset) {
+        return offset + 4 <= len ? Integer.toUnsignedLong(s.get(JAVA_INT, offset)) : -1;
+    }
+
+    private static long u64(MemorySegment s, int len, int offset) {
+        return offset + 8 <= len ? s.get(JAVA_LONG, offset) : -1;
+    }
+}
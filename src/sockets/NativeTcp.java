@@ -0,0 +1,116 @@
+package sockets;
+
+import java.net.Socket;
+
+/**
+ * Opções TCP por socket que a API do Java não expõe: TCP_CONGESTION,
+ * TCP_INFO e TCP_NOTSENT_LOWAT, aplicadas no descritor do próprio socket
+ * do proxy (cada conexão com seu algoritmo, sem sysctl global nem root).
+ *
+ * A implementação nativa (LinuxNativeTcp) usa a Foreign Function & Memory
+ * API, ainda em preview no Java 21: só carrega com --enable-preview e, para
+ * achar o descritor, com os --add-opens do SocketFd (ver Dockerfile). Fora
+ * do Linux, sem essas flags ou com NATIVE_TCP=false, shared() devolve uma
+ * implementação inativa: os métodos retornam UNAVAILABLE/null e quem chama
+ * segue sem troca de algoritmo e com o /proc/net/tcp.
+ */
+public abstract class NativeTcp {
+
+    /** Retorno dos métodos quando a camada nativa ou o descritor não estão disponíveis */
+    public static final int UNAVAILABLE = -1;
+
+    private static final NativeTcp SHARED = load();
+
+    NativeTcp() {}
+
+    public static NativeTcp shared() {
+        return SHARED;
+    }
+
+    public abstract boolean isAvailable();
+
+    /** Motivo de a camada estar inativa (para log), ou "ativo" */
+    public abstract String describe();
+
+    /** setsockopt(TCP_CONGESTION); 0 ou errno (ENOENT: algoritmo não carregado, EPERM: não permitido) */
+    public int setCongestion(Socket s, String algo) {
+        int fd = SocketFd.of(s);
+        return fd < 0 ? UNAVAILABLE : setCongestion(fd, algo);
+    }
+
+    /** Algoritmo em uso no socket, ou null */
+    public String getCongestion(Socket s) {
+        int fd = SocketFd.of(s);
+        return fd < 0 ? null : getCongestion(fd);
+    }
+
+    /** setsockopt(TCP_NOTSENT_LOWAT); bytes < 0 volta ao padrão do kernel (sem limite) */
+    public int setNotSentLowat(Socket s, int bytes) {
+        int fd = SocketFd.of(s);
+        return fd < 0 ? UNAVAILABLE : setNotSentLowat(fd, bytes);
+    }
+
+    /** getsockopt(TCP_INFO) + filas do socket, ou null */
+    public TcpInfo tcpInfo(Socket s) {
+        int fd = SocketFd.of(s);
+        TcpInfo info = fd < 0 ? null : tcpInfo(fd);
+        // o descritor pode ter sido fechado (e reutilizado) durante a leitura
+        return info == null || s.isClosed() ? null : info;
+    }
+
+    abstract int setCongestion(int fd, String algo);
+    abstract String getCongestion(int fd);
+    abstract int setNotSentLowat(int fd, int bytes);
+    abstract TcpInfo tcpInfo(int fd);
+
+    /** Nome curto de um errno comum, para os logs */
+    public static String errnoName(int errno) {
+        switch (errno) {
+            case UNAVAILABLE: return "indisponível";
+            case 0: return "ok";
+            case 1: return "EPERM";
+            case 2: return "ENOENT";
+            case 9: return "EBADF";
+            case 22: return "EINVAL";
+            case 92: return "ENOPROTOOPT";
+            default: return "errno " + errno;
+        }
+    }
+
+    private static NativeTcp load() {
+        NativeTcp loaded;
+        if ("false".equalsIgnoreCase(System.getenv("NATIVE_TCP"))) {
+            loaded = new Inactive("NATIVE_TCP=false");
+        } else if (!System.getProperty("os.name").toLowerCase().contains("linux")) {
+            loaded = new Inactive("não é Linux");
+        } else if (!SocketFd.isAccessible()) {
+            loaded = new Inactive("descritor dos sockets inacessível (faltam os --add-opens)");
+        } else {
+            try {
+                // por nome: a classe é compilada com --enable-preview e sem a flag não carrega
+                loaded = (NativeTcp) Class.forName("sockets.LinuxNativeTcp").getDeclaredConstructor().newInstance();
+            } catch (Throwable e) {
+                loaded = new Inactive("FFM indisponível: " + e);
+            }
+        }
+        System.out.println("[NATIVE] TCP_INFO/TCP_CONGESTION por socket: " + loaded.describe());
+        return loaded;
+    }
+
+    /** Sem camada nativa: nada é aplicado, nada é lido */
+    private static final class Inactive extends NativeTcp {
+
+        private final String reason;
+
+        Inactive(String reason) {
+            this.reason = reason;
+        }
+
+        @Override public boolean isAvailable() { return false; }
+        @Override public String describe() { return "inativo (" + reason + ")"; }
+        @Override int setCongestion(int fd, String algo) { return UNAVAILABLE; }
+        @Override String getCongestion(int fd) { return null; }
+        @Override int setNotSentLowat(int fd, int bytes) { return UNAVAILABLE; }
+        @Override TcpInfo tcpInfo(int fd) { return null; }
+    }
+}
@@ -0,0 +1,62 @@
+package sockets;
+
+import java.io.FileDescriptor;
+import java.lang.reflect.Field;
+import java.net.Socket;
+import java.net.SocketImpl;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Descritor de arquivo de um Socket, que a API pública do Java não expõe.
+ *
+ * Lido por reflexão: SocketChannelImpl.fdVal para sockets de canal (NIO,
+ * ChannelPipe) e Socket.impl -> SocketImpl.fd -> FileDescriptor.fd para os
+ * sockets de stream (os criados com new Socket() vêm embrulhados num
+ * SocksSocketImpl: segue o DelegatingSocketImpl.delegate). Precisa de --add-opens java.base/java.net,
+ * java.base/java.io e java.base/sun.nio.ch; sem eles os campos ficam nulos
+ * e of() devolve -1.
+ */
+final class SocketFd {
+
+    private static final Field CHANNEL_FD = field("sun.nio.ch.SocketChannelImpl", "fdVal");
+    private static final Field SOCKET_IMPL = field("java.net.Socket", "impl");
+    private static final Field IMPL_FD = field("java.net.SocketImpl", "fd");
+    private static final Field DELEGATE = field("java.net.DelegatingSocketImpl", "delegate");
+    private static final Field FD_INT = field("java.io.FileDescriptor", "fd");
+
+    private SocketFd() {}
+
+    static boolean isAccessible() {
+        return CHANNEL_FD != null && SOCKET_IMPL != null && IMPL_FD != null && FD_INT != null;
+    }
+
+    /** Descritor do socket aberto, ou -1 */
+    static int of(Socket s) {
+        if (s == null || s.isClosed()) return -1;
+        try {
+            SocketChannel ch = s.getChannel();
+            if (ch != null) {
+                return CHANNEL_FD != null && CHANNEL_FD.getDeclaringClass().isInstance(ch) ? CHANNEL_FD.getInt(ch) : -1;
+            }
+            if (SOCKET_IMPL == null || IMPL_FD == null || FD_INT == null) return -1;
+            SocketImpl impl = (SocketImpl) SOCKET_IMPL.get(s);
+            while (impl != null && DELEGATE != null && DELEGATE.getDeclaringClass().isInstance(impl)) {
+                impl = (SocketImpl) DELEGATE.get(impl);
+            }
+            FileDescriptor fd = impl == null ? null : (FileDescriptor) IMPL_FD.get(impl);
+            return fd == null ? -1 : FD_INT.getInt(fd);
+        } catch (IllegalAccessException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static Field field(String className, String name) {
+        try {
+            Field f = Class.forName(className).getDeclaredField(name);
+            f.setAccessible(true);
+            return f;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null; // InaccessibleObjectException sem --add-opens
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package sockets;
+
+/**
+ * Campos de struct tcp_info (linux/tcp.h) lidos por getsockopt(TCP_INFO),
+ * mais as filas de envio/recepção (ioctl SIOCOUTQ/SIOCINQ). Tempos em µs,
+ * como o kernel os entrega; campos que o kernel não preencheu (versões
+ * antigas devolvem uma struct menor) valem -1.
+ */
+public record TcpInfo(
+        int state,
+        int caState,
+        int retransmits,     // retransmissões do timer atual
+        long rtoUs,
+        int sndMss,
+        int unacked,         // segmentos
+        int lost,
+        int totalRetrans,
+        long rttUs,
+        long rttVarUs,
+        int sndSsthresh,     // segmentos; valores >= 0xFFFF = ainda em slow start
+        int sndCwnd,         // segmentos
+        long pacingRate,     // bytes/s (do kernel, não o pacing do proxy)
+        long deliveryRate,   // bytes/s
+        long notSentBytes,
+        long minRttUs,
+        long outQueueBytes,  // enviados sem ACK + ainda não enviados (mesmo que tx_queue do /proc)
+        long inQueueBytes) {  // recebidos e ainda não lidos (rx_queue do /proc)
+}
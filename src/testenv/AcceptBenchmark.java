@@ -0,0 +1,113 @@
+package testenv;
+
+import network.ThreadMode;
+import proxy.NioProxyTCP;
+import proxy.ProxyTCP;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark de taxa de conexões através do proxy (loopback).
+ *
+ * Vários clientes abrem conexões em sequência: connect, envia 1 byte, espera
+ * o eco e fecha. Mede conexões/s e a latência accept-to-first-byte (do início
+ * do connect até o primeiro byte de volta, passando pelo backend).
+ *
+ * Uso: java testenv.AcceptBenchmark [thread|virtual|nio] [segundos] [clientes]
+ * (PROXY_ACCEPTORS / PROXY_BACKLOG / UPSTREAM_POOL_SIZE valem normalmente)
+ */
+public class AcceptBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        String mode = args.length > 0 ? args[0] : "thread";
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+
+        int serverPort = 19200;
+        int proxyPort = 18200;
+
+        Harness.startServer("Bench-Echo", new EchoServer(serverPort, ThreadMode.VIRTUAL));
+
+        Runnable proxy;
+        switch (mode) {
+            case "nio":
+                proxy = new NioProxyTCP(proxyPort, "localhost", serverPort);
+                break;
+            case "virtual":
+                proxy = new ProxyTCP(proxyPort, "localhost", serverPort, ThreadMode.VIRTUAL);
+                break;
+            default:
+                proxy = new ProxyTCP(proxyPort, "localhost", serverPort);
+                break;
+        }
+        Harness.startServer("Bench-Proxy", proxy);
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong ok = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<long[]> perClient = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            long[] samples = new long[1 << 16];
+            int[] count = {0};
+            perClient.add(samples);
+
+            threads.add(ThreadMode.PLATFORM.startDaemon("Bench-Client-" + c, () -> {
+                while (System.nanoTime() < deadline) {
+                    long t0 = System.nanoTime();
+                    try (Socket s = new Socket()) {
+                        s.connect(new InetSocketAddress("localhost", proxyPort), 5000);
+                        s.setSoTimeout(5000);
+                        OutputStream out = s.getOutputStream();
+                        InputStream in = s.getInputStream();
+                        out.write('x');
+                        out.flush();
+                        if (in.read() < 0) throw new Exception("EOF");
+                        long lat = System.nanoTime() - t0;
+                        if (count[0] < samples.length) samples[count[0]++] = lat;
+                        ok.incrementAndGet();
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                }
+                samples[samples.length - 1] = count[0]; // guarda o total na última posição
+            }));
+        }
+
+        for (Thread t : threads) t.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long total = 0;
+        for (long[] s : perClient) total += s[s.length - 1];
+        long[] all = new long[(int) total];
+        int pos = 0;
+        for (long[] s : perClient) {
+            int n = (int) s[s.length - 1];
+            System.arraycopy(s, 0, all, pos, n);
+            pos += n;
+        }
+        Arrays.sort(all);
+
+        System.out.printf("[BENCH] modo=%s clientes=%d duração=%.1fs%n", mode, clients, elapsed);
+        System.out.printf("[BENCH]   conexões ok=%d falhas=%d -> %.1f conn/s%n", ok.get(), failed.get(), ok.get() / elapsed);
+        if (all.length > 0) {
+            System.out.printf("[BENCH]   accept-to-first-byte p50=%dµs p90=%dµs p99=%dµs max=%dµs%n",
+                    pct(all, 0.50), pct(all, 0.90), pct(all, 0.99), all[all.length - 1] / 1000);
+        }
+        System.exit(0);
+    }
+
+    private static long pct(long[] sorted, double p) {
+        int idx = (int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)));
+        return sorted[idx] / 1000;
+    }
+}
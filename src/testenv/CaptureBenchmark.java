@@ -0,0 +1,79 @@
+package testenv;
+
+import metrics.CaptureFlow;
+import metrics.CapturePipeline;
+import metrics.Direction;
+import metrics.PCAPWriter;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark do custo da captura no caminho do relay.
+ *
+ * Cada thread faz o papel de um pipe de uma conexão própria (fluxo
+ * 10.0.0.<i> -> 10.0.1.1:80) e grava 'pacotes' pacotes de 'bytes' bytes.
+ * Mede o tempo gasto dentro de writePacket (o que o relay paga) e o tempo
+ * até tudo estar gravado no segmento.
+ *
+ * Uso: java testenv.CaptureBenchmark [threads] [pacotes] [bytes]
+ */
+public class CaptureBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int packets = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+        int size = args.length > 2 ? Integer.parseInt(args[2]) : 1024;
+
+        InetSocketAddress server = new InetSocketAddress("10.0.1.1", 80);
+        List<PCAPWriter> writers = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            InetSocketAddress client = new InetSocketAddress("10.0.0." + (i % 250 + 1), 40000 + i);
+            writers.add(new PCAPWriter(CaptureFlow.of(client, server), Direction.C2S));
+        }
+
+        AtomicLong producerNanos = new AtomicLong();
+        AtomicLong worstNanos = new AtomicLong();
+        byte[] payload = new byte[size];
+
+        long start = System.nanoTime();
+        List<Thread> running = new ArrayList<>();
+        for (PCAPWriter w : writers) {
+            Thread t = new Thread(() -> {
+                long spent = 0, worst = 0;
+                for (int p = 0; p < packets; p++) {
+                    long t0 = System.nanoTime();
+                    w.writePacket(payload, size);
+                    long dt = System.nanoTime() - t0;
+                    spent += dt;
+                    if (dt > worst) worst = dt;
+                }
+                producerNanos.addAndGet(spent);
+                worstNanos.accumulateAndGet(worst, Math::max);
+            });
+            t.start();
+            running.add(t);
+        }
+        for (Thread t : running) t.join();
+        long produced = System.nanoTime() - start;
+
+        for (PCAPWriter w : writers) w.close();
+        CapturePipeline capture = CapturePipeline.shared();
+        capture.awaitIdle(60_000);
+        long total = System.nanoTime() - start;
+
+        long n = (long) threads * packets;
+        long onDisk = capture.getWrittenBytes();
+
+        System.out.printf("[BENCH] %d threads x %d pacotes de %d bytes (%s)%n",
+                threads, packets, size, capture.getOverflow());
+        System.out.printf("[BENCH] writePacket: média %.0f ns, pior %.2f ms%n",
+                producerNanos.get() / (double) n, worstNanos.get() / 1e6);
+        System.out.printf("[BENCH] produção %.0f ms, até o disco %.0f ms (%.1f MB/s)%n",
+                produced / 1e6, total / 1e6, onDisk / (total / 1e9) / (1024 * 1024));
+        System.out.println("[BENCH] " + capture);
+        System.out.println("[BENCH] gravados: " + onDisk + " bytes em " + capture.getSegments() + " segmento(s)");
+    }
+}
@@ -0,0 +1,95 @@
+package testenv;
+
+import network.ThreadMode;
+import proxy.ProxyTCP;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark de throughput bidirecional através do proxy (loopback).
+ *
+ * Sobe um EchoServer e um ProxyTCP locais; cada cliente escreve sem parar
+ * em uma thread e lê o eco em outra, de forma que as duas direções do
+ * proxy (C→S e S→C) ficam ocupadas ao mesmo tempo.
+ *
+ * Uso: java testenv.DuplexBenchmark [segundos] [conexões] [chunkBytes]
+ */
+public class DuplexBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        int connections = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+        int chunkSize = args.length > 2 ? Integer.parseInt(args[2]) : 16 * 1024;
+
+        int serverPort = 19100;
+        int proxyPort = 18100;
+
+        Harness.startServer("Bench-Echo", new EchoServer(serverPort));
+        Harness.startServer("Bench-Proxy", new ProxyTCP(proxyPort, "localhost", serverPort));
+
+        AtomicLong sent = new AtomicLong();
+        AtomicLong received = new AtomicLong();
+        long deadline = System.currentTimeMillis() + seconds * 1000L;
+
+        List<Thread> threads = new ArrayList<>();
+        List<Socket> sockets = new ArrayList<>();
+
+        for (int c = 0; c < connections; c++) {
+            Socket s = new Socket("localhost", proxyPort);
+            s.setTcpNoDelay(true);
+            sockets.add(s);
+
+            threads.add(ThreadMode.PLATFORM.startDaemon("Bench-Writer-" + c, () -> {
+                byte[] chunk = new byte[chunkSize];
+                for (int i = 0; i < chunk.length; i++) chunk[i] = (byte) ('A' + (i % 26));
+                try {
+                    OutputStream out = s.getOutputStream();
+                    while (System.currentTimeMillis() < deadline) {
+                        out.write(chunk);
+                        out.flush();
+                        sent.addAndGet(chunk.length);
+                    }
+                } catch (Exception ignored) {}
+            }));
+
+            threads.add(ThreadMode.PLATFORM.startDaemon("Bench-Reader-" + c, () -> {
+                byte[] buf = new byte[64 * 1024];
+                try {
+                    InputStream in = s.getInputStream();
+                    int r;
+                    while (System.currentTimeMillis() < deadline && (r = in.read(buf)) != -1) {
+                        received.addAndGet(r);
+                    }
+                } catch (Exception ignored) {}
+            }));
+        }
+
+        long start = System.nanoTime();
+        long lastSent = 0, lastRecv = 0;
+        while (System.currentTimeMillis() < deadline) {
+            Thread.sleep(1000);
+            long s = sent.get(), r = received.get();
+            System.out.printf("[BENCH] C->S %.2f MB/s | S->C %.2f MB/s%n",
+                    (s - lastSent) / 1e6, (r - lastRecv) / 1e6);
+            lastSent = s;
+            lastRecv = r;
+        }
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        for (Socket s : sockets) {
+            try { s.close(); } catch (Exception ignored) {}
+        }
+        for (Thread t : threads) t.join(2000);
+
+        System.out.printf("[BENCH] RESULTADO: %d conexões, chunk=%d B, %.1fs%n", connections, chunkSize, elapsed);
+        System.out.printf("[BENCH]   C->S  %.2f MB/s%n", sent.get() / elapsed / 1e6);
+        System.out.printf("[BENCH]   S->C  %.2f MB/s%n", received.get() / elapsed / 1e6);
+        System.out.printf("[BENCH]   Total %.2f MB/s%n", (sent.get() + received.get()) / elapsed / 1e6);
+        System.exit(0);
+    }
+}
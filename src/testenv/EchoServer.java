@@ -1,28 +1,47 @@
 package testenv;
 
+import buffer.BufferPool;
+import buffer.PooledReader;
+import network.ThreadMode;
+
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 
 public class EchoServer implements Runnable {
 
     private final int port;
+    private final ThreadMode threadMode;
+    private final long delayMs;
 
     public EchoServer(int port) {
+        this(port, ThreadMode.PLATFORM);
+    }
+
+    public EchoServer(int port, ThreadMode threadMode) {
+        this(port, threadMode, 0);
+    }
+
+    /** 'delayMs' atrasa cada eco, simulando uma réplica lenta */
+    public EchoServer(int port, ThreadMode threadMode, long delayMs) {
         this.port = port;
+        this.threadMode = threadMode;
+        this.delayMs = delayMs;
     }
 
     @Override
     public void run() {
         try (ServerSocket ss = new ServerSocket(port)) {
-            System.out.println("[ECHO] Servidor escutando na porta " + port);
+            System.out.println("[ECHO] Servidor escutando na porta " + port
+                    + (delayMs > 0 ? " (atraso " + delayMs + "ms)" : ""));
 
             while (true) {
                 Socket s = ss.accept();
                 System.out.println("[ECHO] Cliente conectado");
 
-                new Thread(() -> handle(s)).start();
+                threadMode.start("Echo-Client", () -> handle(s));
             }
 
         } catch (Exception e) {
@@ -32,14 +51,16 @@ public class EchoServer implements Runnable {
 
     private void handle(Socket s) {
         try (InputStream in = s.getInputStream();
-             OutputStream out = s.getOutputStream()) {
+             OutputStream out = s.getOutputStream();
+             PooledReader reader = new PooledReader(in, BufferPool.HEAP)) {
 
-            byte[] buffer = new byte[4096];
-            int r;
+            ByteBuffer chunk;
 
-            while ((r = in.read(buffer)) != -1) {
-                out.write(buffer, 0, r);
+            while ((chunk = reader.next(4096)) != null) {
+                if (delayMs > 0) Thread.sleep(delayMs);
+                out.write(chunk.array(), 0, chunk.remaining());
                 out.flush();
+                reader.recycle();
             }
 
         } catch (Exception e) {
@@ -0,0 +1,21 @@
+package testenv;
+
+import network.ThreadMode;
+
+/**
+ * Partes comuns dos benchmarks e verificações do testenv.
+ */
+final class Harness {
+
+    // tempo para um servidor recém-iniciado abrir a porta
+    private static final long LISTEN_WAIT_MS = 300;
+
+    private Harness() {
+    }
+
+    /** Sobe o servidor (eco, proxy) numa thread daemon e espera ele começar a escutar */
+    static void startServer(String name, Runnable server) throws InterruptedException {
+        ThreadMode.PLATFORM.startDaemon(name, server);
+        Thread.sleep(LISTEN_WAIT_MS);
+    }
+}
@@ -0,0 +1,104 @@
+package testenv;
+
+import network.ThreadMode;
+import proxy.Backend;
+import proxy.BackendSet;
+import proxy.BalanceStrategy;
+import proxy.NioProxyTCP;
+import proxy.ProxyTCP;
+import proxy.RelayMode;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compara as estratégias de balanceamento com réplicas de velocidades
+ * diferentes (loopback). Sobe três EchoServers com atrasos de 0, 5 e 25 ms
+ * por eco; cada cliente abre conexões curtas (algumas idas e voltas de 512 B)
+ * em sequência. Mostra a latência média por requisição e como as conexões
+ * se distribuíram entre os backends.
+ *
+ * Uso: java testenv.LoadBalanceBenchmark [round-robin|least-connections|latency] [segundos] [clientes] [thread|nio]
+ */
+public class LoadBalanceBenchmark {
+
+    private static final long[] DELAYS_MS = {0, 5, 25};
+    private static final int ROUND_TRIPS = 10;
+
+    public static void main(String[] args) throws Exception {
+        String strategy = args.length > 0 ? args[0] : "latency";
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int clients = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        String mode = args.length > 3 ? args[3] : "thread";
+
+        int proxyPort = 18300;
+        List<Backend> list = new ArrayList<>();
+        for (int i = 0; i < DELAYS_MS.length; i++) {
+            int port = 19300 + i;
+            Harness.startServer("Bench-Echo-" + i, new EchoServer(port, ThreadMode.VIRTUAL, DELAYS_MS[i]));
+            list.add(new Backend("localhost", port));
+        }
+
+        BackendSet backends = new BackendSet(list, BalanceStrategy.fromName(strategy));
+        Runnable proxy = mode.equals("nio")
+                ? new NioProxyTCP(proxyPort, backends)
+                : new ProxyTCP(proxyPort, backends, ThreadMode.PLATFORM, RelayMode.STREAM);
+        Harness.startServer("Bench-Proxy", proxy);
+
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        AtomicLong requests = new AtomicLong();
+        AtomicLong latencyNanos = new AtomicLong();
+        AtomicLong failed = new AtomicLong();
+        List<Thread> threads = new ArrayList<>();
+
+        long start = System.nanoTime();
+        for (int c = 0; c < clients; c++) {
+            threads.add(ThreadMode.PLATFORM.startDaemon("Bench-Client-" + c, () -> {
+                byte[] payload = new byte[512];
+                byte[] reply = new byte[512];
+                while (System.nanoTime() < deadline) {
+                    try (Socket s = new Socket()) {
+                        s.connect(new InetSocketAddress("localhost", proxyPort), 5000);
+                        s.setSoTimeout(5000);
+                        s.setTcpNoDelay(true);
+                        OutputStream out = s.getOutputStream();
+                        InputStream in = s.getInputStream();
+
+                        for (int r = 0; r < ROUND_TRIPS; r++) {
+                            long t0 = System.nanoTime();
+                            out.write(payload);
+                            out.flush();
+                            int got = 0;
+                            while (got < reply.length) {
+                                int n = in.read(reply, got, reply.length - got);
+                                if (n < 0) throw new Exception("EOF");
+                                got += n;
+                            }
+                            latencyNanos.addAndGet(System.nanoTime() - t0);
+                            requests.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                    }
+                }
+            }));
+        }
+
+        for (Thread t : threads) t.join();
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("[BENCH] estratégia=%s modo=%s clientes=%d duração=%.1fs%n", strategy, mode, clients, elapsed);
+        System.out.printf("[BENCH]   requisições=%d (%.0f req/s) falhas=%d latência média=%.2fms%n",
+                requests.get(), requests.get() / elapsed, failed.get(),
+                requests.get() == 0 ? 0.0 : latencyNanos.get() / 1e6 / requests.get());
+        for (int i = 0; i < list.size(); i++) {
+            System.out.printf("[BENCH]   atraso %2dms -> %s%n", DELAYS_MS[i], list.get(i));
+        }
+        System.exit(0);
+    }
+}
@@ -0,0 +1,169 @@
+package testenv;
+
+import metrics.BinaryMetricsLog;
+import metrics.BinaryMetricsReader;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Compara o log binário de métricas com o CSV por conexão num soak sintético.
+ *
+ * Cada conexão gera uma linha a cada ~500ms enquanto transfere (contadores,
+ * RTT, throughput e cwnd mudam; buffer, opções de socket e algoritmo quase
+ * nunca) e uma a cada 10s quando ociosa, alternando períodos ativos e
+ * ociosos. As linhas das conexões são intercaladas como no processo real.
+ *
+ * Mede bytes e tempo por linha dos dois formatos (CSV com printf + flush,
+ * como o TCPMetrics fazia), confere que o CSV lido de volta do binário é
+ * idêntico ao escrito direto e exporta um CSV por conexão com o
+ * BinaryMetricsReader (milhares de conexões, sem esgotar descritores).
+ *
+ * Uso: java testenv.MetricsLogBenchmark [conexões] [linhasPorConexão] [semente]
+ */
+public class MetricsLogBenchmark {
+
+    private static final String[] ALGORITHMS = { "BBR", "CUBIC", "RENO" };
+
+    /** Estado sintético de uma conexão */
+    private static final class Conn {
+        final long id;
+        long epoch, c2s, s2c, rtt, rttVar, thr, buffer, cwnd, ssthresh, sndBuf, rcvBuf, noDelay, retrans, unacked;
+        String algorithm;
+        boolean active = true;
+        long rateBps;
+
+        Conn(long id, long start, Random r) {
+            this.id = id;
+            this.epoch = start;
+            this.rtt = 500 + r.nextInt(20_000);
+            this.rttVar = rtt / 4;
+            this.buffer = 16 * 1024;
+            this.cwnd = 10;
+            this.ssthresh = 300;
+            this.sndBuf = 131_072;
+            this.rcvBuf = 131_072;
+            this.algorithm = ALGORITHMS[r.nextInt(ALGORITHMS.length)];
+            this.rateBps = 1_000_000 + r.nextInt(50_000_000);
+        }
+
+        long[] next(Random r) {
+            if (r.nextInt(40) == 0) active = !active;
+            long step = active ? 500 + r.nextInt(4) : 10_000 + r.nextInt(4);
+            epoch += step;
+            if (active) {
+                long sent = (long) (rateBps * step / 1000 * (0.9 + 0.2 * r.nextDouble()));
+                c2s += sent / 10;
+                s2c += sent;
+                thr = (sent + sent / 10) * 1000 / step;
+                rtt = Math.max(100, rtt + (long) (rtt * 0.05 * r.nextGaussian()));
+                rttVar = Math.max(1, (3 * rttVar + Math.abs(rtt - rttVar * 4)) / 4);
+                cwnd = Math.min(ssthresh, cwnd + 1 + r.nextInt(3));
+                unacked = r.nextInt(65_536);
+                if (r.nextInt(50) == 0) retrans++;
+                if (r.nextInt(50) == 0) buffer = 1024L << r.nextInt(9);
+            } else {
+                thr = 0;
+                unacked = 0;
+            }
+            if (r.nextInt(500) == 0) noDelay ^= 1;
+            return new long[] { epoch, c2s, s2c, rtt, rttVar, thr, 0, 0, buffer, cwnd, ssthresh,
+                    sndBuf, rcvBuf, noDelay, retrans, unacked };
+        }
+
+        String csv(long[] v) {
+            return String.format("%d,%d,%d,%d,%d,%d,%s,%s,%d,%d,%d,%d,%d,%d,%d,%d",
+                    v[0], v[1], v[2], v[3], v[4], v[5], "OK", algorithm,
+                    v[8], v[9], v[10], v[11], v[12], v[13], v[14], v[15]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int rowsPerConn = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+
+        File dir = Files.createTempDirectory("metrics-log-bench").toFile();
+        File bin = new File(dir, "soak.bin");
+        File csv = new File(dir, "soak.csv");
+
+        Random r = new Random(seed);
+        Conn[] conns = new Conn[connections];
+        for (int i = 0; i < connections; i++) conns[i] = new Conn(i + 1, 1_700_000_000_000L + r.nextInt(5000), r);
+
+        Map<Long, StringBuilder> expected = new HashMap<>();
+        long binNanos = 0, csvNanos = 0, csvBytes = 0;
+        long rows = (long) connections * rowsPerConn;
+        String header = String.join(",", BinaryMetricsLog.COLUMNS);
+
+        try (BinaryMetricsLog log = new BinaryMetricsLog(bin.getPath());
+             PrintWriter out = new PrintWriter(new FileWriter(csv))) {
+            // cada conexão teria o próprio CSV com cabeçalho
+            csvBytes += (long) connections * (header.length() + 1);
+            for (int row = 0; row < rowsPerConn; row++) {
+                for (Conn c : conns) {
+                    long[] v = c.next(r);
+                    String line = c.csv(v);
+                    expected.computeIfAbsent(c.id, k -> new StringBuilder()).append(line).append('\n');
+
+                    long t0 = System.nanoTime();
+                    log.append(c.id, v.clone(), "OK", c.algorithm);
+                    long t1 = System.nanoTime();
+                    out.println(line);
+                    out.flush();
+                    long t2 = System.nanoTime();
+                    binNanos += t1 - t0;
+                    csvNanos += t2 - t1;
+                    csvBytes += line.length() + 1;
+                }
+            }
+            for (Conn c : conns) log.closeConnection(c.id);
+        }
+
+        // leitura de volta: deve reproduzir exatamente as linhas escritas
+        Map<Long, StringBuilder> actual = new HashMap<>();
+        try (BinaryMetricsReader reader = new BinaryMetricsReader(new FileInputStream(bin))) {
+            reader.forEach((id, values) ->
+                    actual.computeIfAbsent(id, k -> new StringBuilder()).append(reader.toCsv(values)).append('\n'));
+        }
+        boolean identical = true;
+        for (Conn c : conns) {
+            identical &= expected.get(c.id).toString().equals(String.valueOf(actual.get(c.id)));
+        }
+
+        // exportação de um CSV por conexão, com a saída [EXPORT] silenciada
+        PrintStream stdout = System.out;
+        long t0 = System.nanoTime();
+        try {
+            System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+            BinaryMetricsReader.main(new String[] { bin.getPath() });
+        } finally {
+            System.setOut(stdout);
+        }
+        long exportMs = (System.nanoTime() - t0) / 1_000_000;
+        File[] exported = dir.listFiles((d, name) -> name.startsWith("soak_conn"));
+        int exportedFiles = exported == null ? 0 : exported.length;
+
+        long binBytes = bin.length();
+        System.out.printf("[LOG-BENCH] %d conexões x %d linhas (%d linhas)%n", connections, rowsPerConn, rows);
+        System.out.printf("[LOG-BENCH]   binário: %.1f B/linha, %d ns/linha%n", (double) binBytes / rows, binNanos / rows);
+        System.out.printf("[LOG-BENCH]   CSV:     %.1f B/linha, %d ns/linha%n", (double) csvBytes / rows, csvNanos / rows);
+        System.out.printf("[LOG-BENCH]   %.1fx menor, %.1fx menos tempo por linha%n",
+                (double) csvBytes / binBytes, (double) csvNanos / Math.max(1, binNanos));
+        System.out.println("[LOG-BENCH]   leitura idêntica ao CSV: " + (identical ? "sim" : "NÃO"));
+        System.out.println("[LOG-BENCH]   exportação: " + exportedFiles + " arquivos em " + exportMs + "ms");
+
+        if (exported != null) for (File f : exported) f.delete();
+        bin.delete();
+        csv.delete();
+        dir.delete();
+    }
+}
@@ -0,0 +1,136 @@
+package testenv;
+
+import metrics.MetricsHttpServer;
+import network.ThreadMode;
+import proxy.ProxyTCP;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Teste local do endpoint /metrics.
+ *
+ * Sobe EchoServer + ProxyTCP + MetricsHttpServer em loopback, passa tráfego
+ * por uma conexão aberta e faz o scrape, validando:
+ *  - Content-Type OpenMetrics e "# EOF" no final;
+ *  - sintaxe de cada linha (comentários # TYPE/# HELP e amostras nome{labels} valor);
+ *  - famílias obrigatórias do processo e da conexão;
+ *  - histogramas com faixas cumulativas não decrescentes e +Inf igual ao _count.
+ *
+ * Uso: java testenv.MetricsScrapeCheck   (código de saída 0 = OK)
+ */
+public class MetricsScrapeCheck {
+
+    private static final Pattern SAMPLE =
+            Pattern.compile("^([a-zA-Z_:][a-zA-Z0-9_:]*)(\\{([^}]*)\\})? (-?[0-9]+(\\.[0-9]+)?)$");
+    private static final Pattern COMMENT = Pattern.compile("^# (TYPE|HELP|UNIT) [a-zA-Z_:][a-zA-Z0-9_:]* .+$");
+
+    private static final String[] REQUIRED = {
+            "proxy_connections_total", "proxy_active_connections", "proxy_bytes_total",
+            "proxy_policy_switches_total", "proxy_rtt_us_bucket", "proxy_forward_us_count",
+            "proxy_connection_bytes_total", "proxy_connection_rtt_us", "proxy_connection_cwnd",
+            "proxy_connection_buffer_size_bytes", "proxy_connection_policy",
+            "proxy_connection_policy_switches_total", "proxy_connection_chunk_bytes_bucket"
+    };
+
+    private static final List<String> errors = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        int serverPort = 19400;
+        int proxyPort = 18400;
+        int metricsPort = 19464;
+
+        Harness.startServer("Check-Echo", new EchoServer(serverPort, ThreadMode.VIRTUAL));
+        Harness.startServer("Check-Proxy", new ProxyTCP(proxyPort, "localhost", serverPort));
+        MetricsHttpServer http = new MetricsHttpServer(metricsPort);
+        http.start();
+
+        // conexão continua aberta durante o scrape para aparecer nas métricas por conexão
+        try (Socket s = new Socket("localhost", proxyPort)) {
+            s.setSoTimeout(5000);
+            OutputStream out = s.getOutputStream();
+            InputStream in = s.getInputStream();
+            byte[] msg = new byte[1024];
+            for (int i = 0; i < 20; i++) {
+                out.write(msg);
+                out.flush();
+                in.readNBytes(msg.length);
+            }
+
+            HttpURLConnection c = (HttpURLConnection) URI.create("http://localhost:" + metricsPort + "/metrics").toURL().openConnection();
+            String type = c.getHeaderField("Content-Type");
+            String body = new String(c.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+
+            if (c.getResponseCode() != 200) errors.add("HTTP " + c.getResponseCode());
+            if (type == null || !type.startsWith("application/openmetrics-text")) errors.add("Content-Type: " + type);
+            validate(body);
+
+            System.out.println("[CHECK] " + body.split("\n").length + " linhas, " + body.length() + " bytes");
+        }
+
+        http.stop();
+        if (errors.isEmpty()) {
+            System.out.println("[CHECK] OK");
+            System.exit(0);
+        }
+        for (String e : errors) System.out.println("[CHECK] ERRO: " + e);
+        System.exit(1);
+    }
+
+    private static void validate(String body) {
+        if (!body.endsWith("# EOF\n")) errors.add("não termina com # EOF");
+
+        Map<String, Boolean> seen = new HashMap<>();
+        // série do histograma (nome + labels sem le) -> último valor cumulativo
+        Map<String, Long> lastBucket = new HashMap<>();
+        Map<String, Long> infBucket = new HashMap<>();
+        Map<String, Long> counts = new HashMap<>();
+
+        for (String line : body.split("\n")) {
+            if (line.equals("# EOF")) continue;
+            if (line.startsWith("#")) {
+                if (!COMMENT.matcher(line).matches()) errors.add("comentário inválido: " + line);
+                continue;
+            }
+            Matcher m = SAMPLE.matcher(line);
+            if (!m.matches()) {
+                errors.add("amostra inválida: " + line);
+                continue;
+            }
+            String name = m.group(1);
+            String labels = m.group(3) == null ? "" : m.group(3);
+            long value = (long) Double.parseDouble(m.group(4));
+            seen.put(name, true);
+
+            if (name.endsWith("_bucket")) {
+                String le = labels.replaceAll(".*le=\"([^\"]*)\".*", "$1");
+                String series = name.substring(0, name.length() - 7) + "{" + labels.replaceAll(",?le=\"[^\"]*\"", "") + "}";
+                Long prev = lastBucket.get(series);
+                if (prev != null && value < prev) errors.add("faixas decrescentes em " + series);
+                lastBucket.put(series, value);
+                if (le.equals("+Inf")) infBucket.put(series, value);
+            } else if (name.endsWith("_count")) {
+                counts.put(name.substring(0, name.length() - 6) + "{" + labels + "}", value);
+            }
+        }
+
+        for (String r : REQUIRED) {
+            if (!seen.containsKey(r)) errors.add("família ausente: " + r);
+        }
+        for (Map.Entry<String, Long> e : counts.entrySet()) {
+            Long inf = infBucket.get(e.getKey());
+            if (inf == null) errors.add("sem +Inf: " + e.getKey());
+            else if (!inf.equals(e.getValue())) errors.add("+Inf != _count em " + e.getKey());
+        }
+    }
+}
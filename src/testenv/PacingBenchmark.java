@@ -0,0 +1,156 @@
+package testenv;
+
+import metrics.LogHistogram;
+import network.ThreadMode;
+import optimizations.TimerWheel;
+import optimizations.TokenBucket;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Benchmark do pacing em loopback.
+ *
+ * Cada conexão escreve chunks num sink local o mais rápido que o pacing
+ * deixa. No modo 'bucket' cada conexão tem seu TokenBucket (taxa em Mbit/s,
+ * rajada de 64KB) e espera o TimerWheel compartilhado; no modo 'sleep' o
+ * escritor repete o pacing antigo (Thread.sleep(len / 2000) + 1ms por chunk,
+ * a combinação de BALANCED), que ignora a taxa configurada.
+ *
+ * Mede a taxa obtida contra a configurada (bytes além da rajada inicial
+ * pelo tempo de escrita de cada conexão) e a precisão do adiamento: quanto
+ * depois do instante pedido ao balde cada escrita adiada foi liberada.
+ *
+ * Uso: java testenv.PacingBenchmark [mbps] [segundos] [conexões] [chunkBytes] [bucket|sleep]
+ */
+public class PacingBenchmark {
+
+    private static final long BURST = 64 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        long mbps = args.length > 0 ? Long.parseLong(args[0]) : 200;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int chunkSize = args.length > 3 ? Integer.parseInt(args[3]) : 16 * 1024;
+        boolean sleep = args.length > 4 && "sleep".equalsIgnoreCase(args[4]);
+
+        long rate = mbps * 1_000_000L / 8; // bytes/s por conexão
+        ServerSocket sink = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        AtomicLong received = new AtomicLong();
+
+        ThreadMode.PLATFORM.startDaemon("Bench-Accept", () -> {
+            try {
+                while (true) {
+                    Socket s = sink.accept();
+                    ThreadMode.PLATFORM.startDaemon("Bench-Sink", () -> drain(s, received));
+                }
+            } catch (Exception ignored) {}
+        });
+
+        LogHistogram lateness = new LogHistogram();
+        long[] sentBytes = new long[connections];
+        long[] sentNanos = new long[connections];
+        long start = System.nanoTime();
+        long end = start + seconds * 1_000_000_000L;
+
+        List<Thread> writers = new ArrayList<>();
+        for (int c = 0; c < connections; c++) {
+            int idx = c;
+            Socket s = new Socket(InetAddress.getLoopbackAddress(), sink.getLocalPort());
+            s.setTcpNoDelay(true);
+            writers.add(ThreadMode.PLATFORM.startDaemon("Bench-Writer-" + c, () -> {
+                try {
+                    long t0 = System.nanoTime();
+                    sentBytes[idx] = sleep
+                            ? writeSleeping(s.getOutputStream(), chunkSize, end)
+                            : writePaced(s.getOutputStream(), chunkSize, rate, end, lateness);
+                    sentNanos[idx] = System.nanoTime() - t0;
+                    s.close();
+                } catch (Exception e) {
+                    System.out.println("[BENCH] escritor " + idx + " falhou: " + e.getMessage());
+                }
+            }));
+        }
+
+        long last = 0;
+        while (System.nanoTime() < end) {
+            Thread.sleep(1000);
+            long r = received.get();
+            System.out.printf("[BENCH] %.1f Mbit/s no sink%n", (r - last) * 8 / 1e6);
+            last = r;
+        }
+        for (Thread t : writers) t.join(5000);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        long total = 0;
+        double achieved = 0;
+        for (int c = 0; c < connections; c++) {
+            total += sentBytes[c];
+            long paced = sleep ? sentBytes[c] : Math.max(0, sentBytes[c] - BURST);
+            if (sentNanos[c] > 0) achieved += paced * 8 / (sentNanos[c] / 1e9) / 1e6;
+        }
+        achieved /= connections;
+
+        System.out.printf("[BENCH] RESULTADO (%s): %d conexões, chunk=%d B, %.1fs%n",
+                sleep ? "sleep" : "bucket", connections, chunkSize, elapsed);
+        System.out.printf("[BENCH]   taxa por conexão: configurada %d Mbit/s, obtida %.1f Mbit/s (%+.1f%%)%n",
+                mbps, achieved, (achieved - mbps) * 100.0 / mbps);
+        System.out.printf("[BENCH]   total %.1f Mbit/s%n", total / elapsed * 8 / 1e6);
+        if (!sleep) {
+            LogHistogram.Snapshot h = lateness.snapshot();
+            System.out.printf("[BENCH]   atraso das escritas adiadas: p50=%dµs p99=%dµs max=%dµs (%d adiadas)%n",
+                    h.percentile(0.50), h.percentile(0.99), h.getMax(), h.getCount());
+            System.out.println("[BENCH]   " + TimerWheel.shared());
+        }
+        System.exit(0);
+    }
+
+    /** Pacing novo: reserva no balde e espera a roda só quando passa do orçamento */
+    private static long writePaced(OutputStream out, int chunkSize, long rate, long end,
+                                   LogHistogram lateness) throws Exception {
+        TokenBucket bucket = new TokenBucket(rate, BURST);
+        TimerWheel wheel = TimerWheel.shared();
+        byte[] chunk = new byte[chunkSize];
+        long sent = 0;
+        while (System.nanoTime() < end) {
+            long now = System.nanoTime();
+            long wait = bucket.reserve(chunkSize, now);
+            if (wait > 0) {
+                wheel.await(wait);
+                lateness.record((System.nanoTime() - (now + wait)) / 1000);
+            }
+
+            out.write(chunk);
+            sent += chunkSize;
+        }
+        return sent;
+    }
+
+    /** Pacing antigo de BALANCED: DelayPolicy + DelayedAckPolicy */
+    private static long writeSleeping(OutputStream out, int chunkSize, long end) throws Exception {
+        byte[] chunk = new byte[chunkSize];
+        long sent = 0;
+        while (System.nanoTime() < end) {
+            long delay = chunkSize / 2000;
+            if (delay > 0) Thread.sleep(delay);
+            Thread.sleep(1);
+            out.write(chunk);
+            sent += chunkSize;
+        }
+        return sent;
+    }
+
+    private static void drain(Socket s, AtomicLong received) {
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = s.getInputStream()) {
+            int r;
+            while ((r = in.read(buf)) != -1) received.addAndGet(r);
+        } catch (Exception ignored) {}
+    }
+}
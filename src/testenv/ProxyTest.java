@@ -2,8 +2,6 @@ package testenv;
 
 import proxy.ProxyHandler;
 import optimizations.TCPOpPolicy;
-import optimizations.DelayPolicy;
-import optimizations.DelayedAckPolicy;
 import metrics.TCPMetrics;
 
 import java.net.ServerSocket;
@@ -15,7 +13,7 @@ import java.net.Socket;
  * Cenários:
  * 1. Conexão direta (sem proxy)
  * 2. Conexão via proxy sem otimização
- * 3. Conexão via proxy com otimização (DelayPolicy + DelayedAckPolicy)
+ * 3. Conexão via proxy com otimização (AlgorithmSelector + PacingPolicy)
  *
  * Use tc (Linux) para simular atraso, perda e limitação de banda se desejar.
  */
@@ -87,7 +85,7 @@ public class ProxyTest {
         proxyThreadNoOpt.start();
 
         // -------------------------------
-        // 3️⃣ Proxy com otimização (Delay + Delayed ACK)
+        // 3️⃣ Proxy com otimização (seletor + pacing)
         // -------------------------------
         Thread proxyThreadOpt = new Thread(() -> {
             try (ServerSocket proxyListener = new ServerSocket(proxyPort + 1)) {
@@ -97,17 +95,8 @@ public class ProxyTest {
                     Socket serverSock = new Socket("localhost", serverPort);
                     TCPMetrics metrics = new TCPMetrics(clientSock, serverSock);
 
-                    // Política combinada: TCP pacing + Delayed ACK
-                    TCPOpPolicy optimizedPolicy = new TCPOpPolicy() {
-                        private final DelayPolicy pacing = new DelayPolicy(metrics);
-                        private final DelayedAckPolicy delayed = new DelayedAckPolicy(metrics);
-
-                        @Override
-                        public void apply(byte[] buf, int len) {
-                            pacing.apply(buf, len);       // limita taxa de envio
-                            delayed.apply(buf, len);      // atrasa ACKs
-                        }
-                    };
+                    // Política combinada: heurística do AlgorithmSelector + pacing por balde de tokens
+                    TCPOpPolicy optimizedPolicy = TCPOpPolicy.defaultPolicies(metrics);
 
                     new Thread(new ProxyHandler(clientSock, "localhost", serverPort) {
                         @Override